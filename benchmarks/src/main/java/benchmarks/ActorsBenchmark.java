@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.model.Actors;
+import core.model.Level;
+import core.model.World;
+
+/**
+ * One batch update of many bots walking through the synthetic pit, spread
+ * over its whole height.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActorsBenchmark {
+
+	private static final float DELTA = 1 / 60f;
+	private static final int HEIGHT = 16384;
+
+	@Param({ "100", "1000", "10000" })
+	public int actors;
+
+	private World world;
+
+	@Setup
+	public void setup() {
+		Level level = new Level(SyntheticMaps.format(HEIGHT));
+		// the bots are everywhere, so keep the whole pit in memory
+		level.getTiles().setResidency(level.getTiles().getChunkCount(), 0);
+		level.setFocus(0);
+		world = new World(level);
+		for (int i = 0; i < actors; i++) {
+			float y = 2 + (float) i / actors * (HEIGHT - 4);
+			world.addActor(2 + i % (SyntheticMaps.WIDTH - 4), y, Actors.BOT);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.getLevel().dispose();
+	}
+
+	@Benchmark
+	public int update() {
+		world.update(DELTA);
+		return world.getActors().size();
+	}
+}
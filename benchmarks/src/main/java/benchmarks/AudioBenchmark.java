@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.controller.AudioController;
+
+/**
+ * The music cross fading of AudioController: which tracks play at which
+ * volume for the height of the dude. Sweeps the whole level, so the border
+ * zones between the sectors get hit as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioBenchmark {
+
+	private static final int LEVEL_HEIGHT = 16384;
+	private static final float STEP = 0.37f;
+
+	@Param({ "1", "4", "16" })
+	public int tracks;
+
+	private float[] volumes;
+	private float y;
+
+	@Setup
+	public void setup() {
+		volumes = new float[tracks];
+		y = LEVEL_HEIGHT;
+	}
+
+	@Benchmark
+	public float sectorVolumes() {
+		y -= STEP;
+		if (y < 0) {
+			y = LEVEL_HEIGHT;
+		}
+		AudioController.sectorVolumes(y, LEVEL_HEIGHT, volumes);
+		return volumes[0];
+	}
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.controller.DudeController;
+import core.model.Dude;
+import core.model.Level;
+import core.model.World;
+
+/**
+ * One simulation step of the dude with collision against blocks and items.
+ * The dude walks (and optionally jumps) through the synthetic pit and gets
+ * put back to the start once it reached the bottom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DudeControllerBenchmark {
+
+	private static final float DELTA = 1 / 60f;
+	/** Turn around every few seconds so the dude doesn't stick to a wall **/
+	private static final int STEPS_PER_DIRECTION = 180;
+
+	@Param({ "idle", "walk", "jump" })
+	public String input;
+
+	private World world;
+	private DudeController controller;
+	private Dude dude;
+	private float startX, startY;
+	private int steps;
+
+	@Setup
+	public void setup() {
+		Level level = new Level(SyntheticMaps.format(16384));
+		level.setItemImages(SyntheticMaps.itemImages(1024));
+		world = new World(level);
+		dude = world.getDude();
+		startX = dude.x;
+		startY = dude.y;
+		controller = new DudeController(world);
+		if (!input.equals("idle")) {
+			controller.rightPressed();
+		}
+		if (input.equals("jump")) {
+			controller.jumpPressed();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		controller.leftReleased();
+		controller.rightReleased();
+		controller.jumpReleased();
+		world.getLevel().dispose();
+	}
+
+	@Benchmark
+	public float update() {
+		if (!input.equals("idle") && ++steps % STEPS_PER_DIRECTION == 0) {
+			if ((steps / STEPS_PER_DIRECTION & 1) == 1) {
+				controller.rightReleased();
+				controller.leftPressed();
+			} else {
+				controller.leftReleased();
+				controller.rightPressed();
+			}
+		}
+		controller.update(DELTA);
+		if (dude.y < 2) {
+			dude.x = startX;
+			dude.y = startY;
+			dude.getVelocity().set(0, 0);
+		}
+		return dude.y;
+	}
+}
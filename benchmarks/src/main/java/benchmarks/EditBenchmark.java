@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import core.model.Level;
+
+/**
+ * Digging: toggles a cell and then queries the merged rectangles around it
+ * the way the collision does, which rebuilds the edited chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditBenchmark {
+
+	private Level level;
+	private final IntArray runs = new IntArray();
+	private int cell;
+
+	@Setup
+	public void setup() {
+		level = new Level(SyntheticMaps.format(16384));
+	}
+
+	@TearDown
+	public void tearDown() {
+		level.dispose();
+	}
+
+	@Benchmark
+	public int editAndQuery() {
+		// walk over a ledge of the start chunk
+		int x = 1 + cell++ % (SyntheticMaps.WIDTH - 2);
+		int y = level.getHeight() - 8;
+		if (!level.clearTile(x, y)) {
+			level.setTile(x, y);
+		}
+		runs.clear();
+		return level.getRuns().query(x - 1, y - 1, x + 1, y + 1, runs);
+	}
+}
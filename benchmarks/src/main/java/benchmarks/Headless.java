@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Stand-ins for the Gdx globals the level loading touches, so loading a map
+ * file runs without a display or native libraries. The simulation itself
+ * doesn't need them (see {@link SyntheticMaps#format(int)}).
+ *
+ * Gdx.files resolves every path against a root directory and Gdx.app drops
+ * all log output.
+ */
+public final class Headless {
+
+	private static File root;
+
+	private Headless() {
+	}
+
+	/** Installs the stand-ins with a scratch directory as root **/
+	public static void install() {
+		install(new File(System.getProperty("java.io.tmpdir"),
+				"thepit-benchmarks"));
+	}
+
+	/** Installs the stand-ins (once), files get resolved against root **/
+	public static synchronized void install(File root) {
+		Headless.root = root;
+		if (Gdx.files != null) {
+			return;
+		}
+		Gdx.files = proxy(Files.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getReturnType() == FileHandle.class) {
+					return new FileHandle(new File(Headless.root,
+							(String) args[0]));
+				}
+				if (method.getName().equals("getLocalStoragePath")
+						|| method.getName().equals("getExternalStoragePath")) {
+					return Headless.root.getAbsolutePath();
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+		Gdx.app = proxy(Application.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getLogLevel")) {
+					return Application.LOG_NONE;
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+
+	public static File getRoot() {
+		return root;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(Headless.class.getClassLoader(),
+				new Class<?>[] { type }, handler);
+	}
+
+	/** Proxies must not return null for primitives **/
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == char.class) {
+			return (char) 0;
+		}
+		return null;
+	}
+}
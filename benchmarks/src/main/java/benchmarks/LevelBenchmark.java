@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.assets.LevelLoader;
+import core.model.Level;
+
+/**
+ * Constructing a level from a compiled map. Only the chunks around the start
+ * get loaded up front, the full variant also loads and merges every chunk
+ * (what a walk through the whole pit costs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+
+	@Param({ "1024", "16384", "131072" })
+	public int height;
+
+	private String map;
+
+	@Setup
+	public void setup() throws IOException {
+		Headless.install();
+		map = SyntheticMaps.write(Headless.getRoot(), height);
+	}
+
+	@Benchmark
+	public Level construct() {
+		Level level = LevelLoader.load(map);
+		level.dispose();
+		return level;
+	}
+
+	@Benchmark
+	public Level constructFull() {
+		Level level = LevelLoader.load(map);
+		level.getRuns().buildAll();
+		level.dispose();
+		return level;
+	}
+}
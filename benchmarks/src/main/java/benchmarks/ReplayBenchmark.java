@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.controller.DudeController;
+import core.controller.FixedTimestep;
+import core.controller.InputFrame;
+import core.controller.InputRecording;
+import core.model.Level;
+import core.model.World;
+
+/**
+ * Replays a minute of play (a recording of made up but player like input)
+ * flat out from the start of the synthetic pit, the same steps every time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+	private static final int STEPS = 60 * 60;
+
+	private Level level;
+	private InputRecording recording;
+	private InputFrame frame = new InputFrame();
+
+	@Setup
+	public void setup() {
+		level = new Level(SyntheticMaps.format(16384));
+		level.setItemImages(SyntheticMaps.itemImages(1024));
+		recording = record(new Random(STEPS));
+	}
+
+	@TearDown
+	public void tearDown() {
+		level.dispose();
+	}
+
+	@Benchmark
+	public float replay() {
+		World world = new World(level);
+		DudeController controller = new DudeController(world);
+		InputRecording.Player player = recording.play();
+		while (player.next(frame)) {
+			controller.update(frame, FixedTimestep.STEP);
+			world.update(FixedTimestep.STEP);
+		}
+		return world.getDude().y;
+	}
+
+	/** Walks left or right for a while, jumping now and then **/
+	private static InputRecording record(Random random) {
+		InputRecording recording = new InputRecording();
+		int buttons = InputFrame.RIGHT;
+		for (int i = 0; i < STEPS; i++) {
+			if (random.nextInt(60) == 0) {
+				buttons = random.nextBoolean() ? InputFrame.LEFT
+						: InputFrame.RIGHT;
+			}
+			if (random.nextInt(40) == 0) {
+				buttons |= InputFrame.JUMP;
+			} else if (random.nextInt(10) == 0) {
+				buttons &= ~InputFrame.JUMP;
+			}
+			recording.record(buttons);
+		}
+		return recording;
+	}
+}
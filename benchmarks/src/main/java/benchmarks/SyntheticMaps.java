@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+
+import core.model.LevelFormat;
+
+/**
+ * Generates compiled maps which look like the real pit: walls on both sides,
+ * ledges with gaps every few rows and items lying around. The same size
+ * always gives the same map.
+ */
+public final class SyntheticMaps {
+
+	public static final int WIDTH = 64;
+	private static final int LEDGE_SPACING = 6;
+
+	private SyntheticMaps() {
+	}
+
+	/** The name of the map with the given height **/
+	public static String name(int height) {
+		return "synthetic_" + WIDTH + "x" + height + ".png";
+	}
+
+	/**
+	 * Writes the compiled map of the given height to root/maps (unless it is
+	 * already there) and returns its name for LevelLoader.load(name).
+	 */
+	public static String write(File root, int height) throws IOException {
+		String name = name(height);
+		File maps = new File(root, "maps");
+		File file = new File(maps, LevelFormat.compiledName(name));
+		if (file.exists()) {
+			return name;
+		}
+		if (!maps.isDirectory() && !maps.mkdirs()) {
+			throw new IOException("Cannot create " + maps);
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			LevelFormat.write(out, WIDTH, height, tiles(height));
+		} finally {
+			out.close();
+		}
+		file.deleteOnExit();
+		return name;
+	}
+
+	/**
+	 * The compiled map of the given height in memory, for new
+	 * Level(format) without any files.
+	 */
+	public static LevelFormat format(int height) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(WIDTH * height
+				+ 1024);
+		try {
+			LevelFormat.write(bytes, WIDTH, height, tiles(height));
+		} catch (IOException e) {
+			// can't happen in memory
+			throw new IllegalStateException(e);
+		}
+		return new LevelFormat(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/** The tiles of the map, y = 0 being the bottom row **/
+	public static byte[] tiles(int height) {
+		Random random = new Random(height);
+		byte[] tiles = new byte[WIDTH * height];
+		for (int y = 0; y < height; y++) {
+			tiles[y * WIDTH] = LevelFormat.TILE_BLOCK;
+			tiles[y * WIDTH + WIDTH - 1] = LevelFormat.TILE_BLOCK;
+		}
+		for (int x = 0; x < WIDTH; x++) {
+			tiles[x] = LevelFormat.TILE_BLOCK;
+		}
+		for (int y = LEDGE_SPACING; y < height - LEDGE_SPACING; y += LEDGE_SPACING) {
+			int gap = 1 + random.nextInt(WIDTH - 8);
+			for (int x = 1; x < WIDTH - 1; x++) {
+				if (x < gap || x > gap + 4) {
+					tiles[y * WIDTH + x] = LevelFormat.TILE_BLOCK;
+				}
+			}
+			if (random.nextInt(3) == 0) {
+				int x = x(gap, random);
+				tiles[(y + 1) * WIDTH + x] = LevelFormat.TILE_ITEM;
+			}
+		}
+		tiles[(height - 2) * WIDTH + WIDTH / 2] = LevelFormat.TILE_START;
+		tiles[WIDTH + WIDTH / 2] = LevelFormat.TILE_FINISH;
+		return tiles;
+	}
+
+	/** Images without textures, enough to create the items of a level **/
+	public static Array<TextureRegion> itemImages(int count) {
+		Array<TextureRegion> images = new Array<TextureRegion>(count);
+		for (int i = 0; i < count; i++) {
+			images.add(new TextureRegion());
+		}
+		return images;
+	}
+
+	/** A column on the ledge, next to the gap **/
+	private static int x(int gap, Random random) {
+		int x = 1 + random.nextInt(WIDTH - 2);
+		return x >= gap && x <= gap + 4 ? gap + 5 : x;
+	}
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import core.model.Dude;
+import core.model.Item;
+import core.model.Level;
+import core.model.World;
+
+/**
+ * The per frame queries of the renderer. Every call moves the dude a bit
+ * further down the pit (wrapping at the bottom), like falling through the
+ * level does, so the streaming and caching behind the queries get exercised
+ * too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark {
+
+	/** A 640x480 screen at 30 pixels per unit, as used by WorldRenderer **/
+	private static final float VIEW_WIDTH = 640 / 30f;
+	private static final float VIEW_HEIGHT = 480 / 30f;
+	private static final float FALL_PER_CALL = 0.25f;
+
+	@Param({ "1024", "131072" })
+	public int height;
+
+	private World world;
+	private Dude dude;
+	private float top;
+	private final Rectangle view = new Rectangle();
+	private final IntArray cells = new IntArray();
+	private final IntArray runs = new IntArray();
+	private final Array<Item> items = new Array<Item>();
+
+	@Setup
+	public void setup() {
+		Level level = new Level(SyntheticMaps.format(height));
+		level.setItemImages(SyntheticMaps.itemImages(height));
+		world = new World(level);
+		dude = world.getDude();
+		top = dude.y;
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.getLevel().dispose();
+	}
+
+	@Benchmark
+	public int visibleBlocks() {
+		fall();
+		cells.clear();
+		return world.getVisibleBlocks(view, cells);
+	}
+
+	@Benchmark
+	public int visibleItems() {
+		fall();
+		items.clear();
+		return world.getVisibleItems(view, items);
+	}
+
+	@Benchmark
+	public int visibleRuns() {
+		fall();
+		runs.clear();
+		return world.getVisibleRuns(view, runs);
+	}
+
+	private void fall() {
+		dude.y -= FALL_PER_CALL;
+		if (dude.y < 1) {
+			dude.y = top;
+		}
+		world.getLevel().setFocus(dude.y);
+		view.set(0, dude.y - VIEW_HEIGHT / 2f, VIEW_WIDTH, VIEW_HEIGHT);
+	}
+}
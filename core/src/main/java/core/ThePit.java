@@ -3,27 +3,110 @@ package core;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.utils.Array;
 
+import core.assets.AssetLoader;
+import core.assets.Assets;
 import core.screens.FinishScreen;
 import core.screens.GameScreen;
+import core.screens.LoadableScreen;
+import core.screens.LoadingScreen;
 
 public class ThePit extends Game {
 	
-	Screen gameScreen;
-	Screen finishScreen;
+	/** Milliseconds per frame spent on preloading while a screen runs **/
+	private static final int PRELOAD_BUDGET = 4;
+
+	LoadableScreen gameScreen;
+	LoadableScreen finishScreen;
+	private AssetLoader loader;
+	private Assets assets;
+	private LoadingScreen loadingScreen;
+	private Array<LoadableScreen> queued = new Array<LoadableScreen>();
 
 	@Override
 	public void create() {
 
 		Gdx.app.setLogLevel(Application.LOG_DEBUG);
+		loader = new AssetLoader();
+		assets = new Assets(loader);
+		loadingScreen = new LoadingScreen(this, loader);
 		gameScreen = new GameScreen(this);
 		finishScreen = new FinishScreen();
-		setScreen(gameScreen);
+		load(gameScreen);
+	}
+
+	@Override
+	public void render() {
+		if (getScreen() != loadingScreen && !loader.isDone()) {
+			loader.update(PRELOAD_BUDGET);
+		}
+		super.render();
+	}
+
+	/**
+	 * Starts loading the assets of the screen in the background, e.g. while
+	 * the current screen is still running.
+	 */
+	public void preload(LoadableScreen screen) {
+		if (!queued.contains(screen, true)) {
+			queued.add(screen);
+			screen.queueAssets(assets);
+		}
+	}
+
+	/**
+	 * Switches to the screen, via the loading screen if its assets are not
+	 * loaded yet.
+	 */
+	public void load(LoadableScreen screen) {
+		preload(screen);
+		if (loader.isDone()) {
+			setScreen(screen);
+		} else {
+			loadingScreen.setNext(screen);
+			setScreen(loadingScreen);
+		}
 	}
 	
+	public boolean isLoaded(LoadableScreen screen) {
+		return queued.contains(screen, true) && loader.isDone();
+	}
+
+	public void preloadFinishScreen()
+	{
+		preload(finishScreen);
+	}
+
+	public boolean isFinishScreenLoaded()
+	{
+		return isLoaded(finishScreen);
+	}
+
+	/**
+	 * Switches to the finish screen (in the same frame if it was preloaded)
+	 * and disposes the game screen, which is not needed anymore.
+	 */
 	public void loadFinishScreen()
 	{
-		setScreen(finishScreen);
+		load(finishScreen);
+		discard(gameScreen);
+	}
+
+	private void discard(LoadableScreen screen) {
+		if (queued.removeValue(screen, true)) {
+			screen.dispose();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		// the current screen and everything preloaded
+		for (LoadableScreen screen : queued) {
+			screen.dispose();
+		}
+		queued.clear();
+		loader.dispose();
 	}
 }
@@ -0,0 +1,191 @@
+package core.assets;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Loads assets in two steps: the decoding and parsing runs on a background
+ * thread, the remaining GL work (texture uploads etc.) runs on the render
+ * thread in {@link #update(int)}, a few tasks per frame.
+ * 
+ */
+public class AssetLoader {
+
+	/** A single asset to load **/
+	public static abstract class Task<T> {
+		private volatile boolean asyncDone;
+		private volatile Throwable error;
+		private boolean done;
+		private boolean cancelled;
+		private T asset;
+
+		/** Runs on the loader thread, must not touch GL **/
+		protected void loadAsync() {
+		}
+
+		/** Runs on the render thread after loadAsync() finished **/
+		protected abstract T loadSync();
+
+		/**
+		 * Runs on the render thread instead of loadSync() if the task got
+		 * cancelled, has to free whatever loadAsync() created.
+		 */
+		protected void discard() {
+		}
+
+		public boolean isDone() {
+			return done;
+		}
+
+		public T get() {
+			if (!done) {
+				throw new GdxRuntimeException("Asset not loaded yet: " + this);
+			}
+			return asset;
+		}
+
+		private void runAsync() {
+			try {
+				loadAsync();
+			} catch (Throwable t) {
+				error = t;
+			}
+			asyncDone = true;
+		}
+	}
+
+	/** How long dispose() waits for the task on the loader thread **/
+	private static final long SHUTDOWN_TIMEOUT = 1000;
+
+	private final Array<Task<?>> pending = new Array<Task<?>>();
+	private ExecutorService executor;
+	private int total;
+	private int finished;
+
+	/**
+	 * Queues the task, its async part starts right away. The sync parts run
+	 * in the order the tasks were added, so a task may use the result of a
+	 * task added before it.
+	 */
+	public <T> Task<T> add(final Task<T> task) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "AssetLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		pending.add(task);
+		total++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				task.runAsync();
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Finishes loaded tasks on the render thread until the given time budget
+	 * is used up. Returns true if everything is loaded.
+	 */
+	public boolean update(int millis) {
+		long end = TimeUtils.millis() + millis;
+		while (pending.size > 0) {
+			Task<?> task = pending.first();
+			if (!task.asyncDone) {
+				return false;
+			}
+			pending.removeIndex(0);
+			finish(task);
+			finished++;
+			if (TimeUtils.millis() >= end) {
+				break;
+			}
+		}
+		if (pending.size == 0) {
+			total = finished = 0;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Drops a task that is not needed anymore. It still finishes its async
+	 * part, but gets discarded instead of loaded.
+	 */
+	public void cancel(Task<?> task) {
+		task.cancelled = true;
+	}
+
+	/** Blocks until everything is loaded **/
+	public void finishLoading() {
+		while (!update(Integer.MAX_VALUE)) {
+			Thread.yield();
+		}
+	}
+
+	public boolean isDone() {
+		return pending.size == 0;
+	}
+
+	/** Progress of everything queued since the loader was last done **/
+	public float getProgress() {
+		if (total == 0) {
+			return 1f;
+		}
+		float progress = finished;
+		// half of the work of a task is done once its async part finished
+		for (int i = 0; i < pending.size; i++) {
+			if (pending.get(i).asyncDone) {
+				progress += 0.5f;
+			}
+		}
+		return progress / total;
+	}
+
+	/**
+	 * Stops the loader thread and frees what it already decoded for the
+	 * tasks still waiting for the render thread (pixmaps etc.).
+	 */
+	public void dispose() {
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+		for (int i = 0; i < pending.size; i++) {
+			Task<?> task = pending.get(i);
+			if (task.asyncDone) {
+				task.discard();
+			}
+		}
+		pending.clear();
+	}
+
+	private <T> void finish(Task<T> task) {
+		if (task.cancelled) {
+			task.discard();
+			return;
+		}
+		if (task.error != null) {
+			throw new GdxRuntimeException("Error loading " + task, task.error);
+		}
+		task.asset = task.loadSync();
+		task.done = true;
+	}
+}
@@ -0,0 +1,118 @@
+package core.assets;
+
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * The central cache for shared assets. Every acquire (atlas(), texture(),
+ * ...) hands out the one shared load task of that file and counts a
+ * reference, which the user has to give back with {@link #release(String)}
+ * when it gets disposed. The asset itself is disposed with the last
+ * reference.
+ */
+public class Assets {
+	private static final Logger logger = new Logger(
+			Assets.class.getCanonicalName(), Logger.DEBUG);
+
+	/** Asset types, see newTask() **/
+	private static final int ATLAS = 0;
+	private static final int TEXTURE = 1;
+	private static final int MUSIC = 2;
+	private static final int SOUND = 3;
+
+	private static class Entry {
+		AssetLoader.Task<?> task;
+		int references;
+	}
+
+	private final AssetLoader loader;
+	private final ObjectMap<String, Entry> entries = new ObjectMap<String, Entry>();
+
+	public Assets(AssetLoader loader) {
+		this.loader = loader;
+	}
+
+	/** The loader for everything that is not shared (e.g. levels) **/
+	public AssetLoader getLoader() {
+		return loader;
+	}
+
+	public AssetLoader.Task<TextureAtlas> atlas(String path) {
+		return acquire(path, ATLAS);
+	}
+
+	public AssetLoader.Task<Texture> texture(String path) {
+		return acquire(path, TEXTURE);
+	}
+
+	public AssetLoader.Task<Music> music(String path) {
+		return acquire(path, MUSIC);
+	}
+
+	public AssetLoader.Task<Sound> sound(String path) {
+		return acquire(path, SOUND);
+	}
+
+	public int getReferences(String path) {
+		Entry entry = entries.get(path);
+		return entry == null ? 0 : entry.references;
+	}
+
+	/**
+	 * Gives back a reference, the last one disposes the asset (or drops it
+	 * from the loader if it is still loading).
+	 */
+	public void release(String path) {
+		Entry entry = entries.get(path);
+		if (entry == null) {
+			throw new GdxRuntimeException("Asset not acquired: " + path);
+		}
+		if (--entry.references > 0) {
+			return;
+		}
+		entries.remove(path);
+		if (entry.task.isDone()) {
+			((Disposable) entry.task.get()).dispose();
+			logger.debug("Disposed " + path);
+		} else {
+			loader.cancel(entry.task);
+		}
+	}
+
+	/**
+	 * Counts a reference on the shared task of the file, the task only gets
+	 * created (and queued) the first time.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> AssetLoader.Task<T> acquire(String path, int type) {
+		Entry entry = entries.get(path);
+		if (entry == null) {
+			entry = new Entry();
+			entry.task = loader.add(newTask(path, type));
+			entries.put(path, entry);
+		}
+		entry.references++;
+		return (AssetLoader.Task<T>) entry.task;
+	}
+
+	private static AssetLoader.Task<?> newTask(String path, int type) {
+		switch (type) {
+		case ATLAS:
+			return new AtlasTask(path);
+		case TEXTURE:
+			return new TextureTask(path);
+		case MUSIC:
+			return new MusicTask(path);
+		case SOUND:
+			return new SoundTask(path);
+		default:
+			throw new GdxRuntimeException("Unknown asset type: " + type);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package core.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData.Page;
+import com.badlogic.gdx.utils.Array;
+
+/** Parses the pack file and decodes the pages off the render thread **/
+public class AtlasTask extends AssetLoader.Task<TextureAtlas> {
+
+	private final String path;
+	private TextureAtlasData data;
+	private Array<Pixmap> pixmaps = new Array<Pixmap>();
+
+	public AtlasTask(String path) {
+		this.path = path;
+	}
+
+	@Override
+	protected void loadAsync() {
+		FileHandle file = Gdx.files.internal(path);
+		data = new TextureAtlasData(file, file.parent(), false);
+		for (Page page : data.getPages()) {
+			pixmaps.add(new Pixmap(page.textureFile));
+		}
+	}
+
+	@Override
+	protected TextureAtlas loadSync() {
+		Array<Page> pages = data.getPages();
+		for (int i = 0; i < pages.size; i++) {
+			Page page = pages.get(i);
+			page.texture = new Texture(pixmaps.get(i), page.format,
+					page.useMipMaps);
+			pixmaps.get(i).dispose();
+		}
+		pixmaps.clear();
+		return new TextureAtlas(data);
+	}
+
+	@Override
+	protected void discard() {
+		for (Pixmap pixmap : pixmaps) {
+			pixmap.dispose();
+		}
+		pixmaps.clear();
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,184 @@
+package core.assets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Scanner;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.Logger;
+
+import core.model.Level;
+import core.model.LevelFormat;
+import core.model.TileGrid;
+
+/**
+ * Reads levels and their items from the files of the game. This is where
+ * all the Gdx file handling lives, the level itself is plain data.
+ */
+public final class LevelLoader {
+	private static final Logger logger = new Logger("Level", Logger.DEBUG);
+
+	private LevelLoader() {
+	}
+
+	/**
+	 * Loads the compiled map if there is one, otherwise decodes the png.
+	 * Doesn't need GL, so this may run on a loader thread. The items get
+	 * created once their images are known, see
+	 * {@link #setItemImages(Level, TextureAtlas, Array)}.
+	 */
+	public static Level load(String map) {
+		FileHandle compiled = Gdx.files.internal("maps/"
+				+ LevelFormat.compiledName(map));
+		Level level;
+		if (compiled.exists()) {
+			LevelFormat format = new LevelFormat(readBuffer(compiled));
+			if (!format.hasStart()) {
+				logger.error("No start position found in map");
+			}
+			level = new Level(format);
+		} else {
+			level = loadImage(map);
+		}
+		logger.debug("Map width: " + level.getWidth());
+		logger.debug("Map height: " + level.getHeight());
+		return level;
+	}
+
+	/** Reads the image names of the items, one per line **/
+	public static Array<String> readItemNames(String itemsFile) {
+		Array<String> names = new Array<String>();
+		try {
+			logger.debug(itemsFile);
+			Scanner s = new Scanner(Gdx.files.internal(itemsFile).read());
+			while (s.hasNext()) {
+				names.add(s.nextLine());
+			}
+			s.close();
+		} catch (GdxRuntimeException e) {
+			logger.error("Error reading items.txt", e);
+			System.exit(-1);
+		}
+		return names;
+	}
+
+	/**
+	 * Creates the items, the n-th item found in the map gets the n-th image.
+	 * Item slots without an image stay empty.
+	 */
+	public static void setItemImages(Level level, TextureAtlas atlas,
+			Array<String> names) {
+		Array<TextureRegion> itemImages = new Array<TextureRegion>();
+		TextureRegion image;
+		for (String imageName : names) {
+			logger.debug(imageName);
+			image = atlas.findRegion(imageName);
+			if (image == null) {
+				logger.error("Cannot find image with name " + imageName);
+			} else {
+				itemImages.add(image);
+			}
+		}
+		level.setItemImages(itemImages);
+	}
+
+	private static Level loadImage(String map) {
+		Pixmap pm = new Pixmap(Gdx.files.internal("maps/" + map));
+		TileGrid tiles = new TileGrid(pm.getWidth(), pm.getHeight());
+
+		// the colors are just debug output, don't pay for them otherwise
+		boolean debug = logger.getLevel() >= Logger.DEBUG
+				&& Gdx.app.getLogLevel() >= Application.LOG_DEBUG;
+		MapDecoder decoder = new MapDecoder(pm, tiles, debug);
+		decoder.decode();
+		pm.dispose();
+
+		if (decoder.getStartCount() > 1) {
+			logger.error("Start position already set, but found another one (why?)");
+		}
+		Vector2 start;
+		if (decoder.hasStart()) {
+			start = new Vector2(decoder.getStartX(), decoder.getStartY());
+		} else {
+			logger.error("No start position found in map");
+			start = new Vector2(0, 0);
+		}
+		Vector2 finish = null;
+		if (decoder.hasFinish()) {
+			finish = new Vector2(decoder.getFinishX(), decoder.getFinishY());
+		}
+
+		if (debug) {
+			StringBuilder temp = new StringBuilder("Different colors in map:");
+			IntSet.IntSetIterator colors = decoder.getColors().iterator();
+			while (colors.hasNext) {
+				temp.append(" 0x").append(Integer.toHexString(colors.next()));
+			}
+			logger.debug(temp.toString());
+		}
+		return new Level(tiles, decoder.getItemSlots(), start, finish);
+	}
+
+	/**
+	 * Memory maps the file if it lives in the file system, otherwise (e.g.
+	 * packed into the apk) it gets streamed into a direct buffer.
+	 */
+	private static ByteBuffer readBuffer(FileHandle file) {
+		if (file.type() != FileType.Classpath && file.file().exists()) {
+			RandomAccessFile raf = null;
+			try {
+				raf = new RandomAccessFile(file.file(), "r");
+				FileChannel channel = raf.getChannel();
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			} catch (IOException e) {
+				throw new GdxRuntimeException("Cannot map " + file, e);
+			} finally {
+				close(raf);
+			}
+		}
+
+		int length = (int) file.length();
+		if (length <= 0) {
+			return ByteBuffer.wrap(file.readBytes());
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+		ReadableByteChannel channel = Channels.newChannel(file.read());
+		try {
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+			}
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Cannot read " + file, e);
+		} finally {
+			close(channel);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package core.assets;
+
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+
+import core.model.Level;
+import core.view.WorldRenderer;
+
+/**
+ * Decodes the map and reads the item names off the render thread, the items
+ * get their images once the atlas is there. The task owns the level: worlds
+ * only borrow it, and {@link #release()} disposes it and gives back the
+ * reference on the shared atlas.
+ */
+public class LevelTask extends AssetLoader.Task<Level> {
+
+	private final String map;
+	private final String itemsFile;
+	private final Assets assets;
+	private final AssetLoader.Task<TextureAtlas> atlas;
+	private Level level;
+	private Array<String> itemNames;
+
+	/** Acquires the atlas, so it gets loaded before the level **/
+	public LevelTask(String map, String itemsFile, Assets assets) {
+		this.map = map;
+		this.itemsFile = itemsFile;
+		this.assets = assets;
+		this.atlas = assets.atlas(WorldRenderer.ATLAS);
+	}
+
+	/**
+	 * Disposes the level (or drops it from the loader if it is still loading)
+	 * and gives back the atlas.
+	 */
+	public void release() {
+		if (isDone()) {
+			get().dispose();
+		} else {
+			assets.getLoader().cancel(this);
+		}
+		assets.release(WorldRenderer.ATLAS);
+	}
+
+	@Override
+	protected void loadAsync() {
+		level = LevelLoader.load(map);
+		itemNames = LevelLoader.readItemNames(itemsFile);
+	}
+
+	@Override
+	protected Level loadSync() {
+		LevelLoader.setItemImages(level, atlas.get(), itemNames);
+		return level;
+	}
+
+	@Override
+	protected void discard() {
+		if (level != null) {
+			level.dispose();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return map;
+	}
+}
@@ -0,0 +1,231 @@
+package core.assets;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntSet;
+
+import core.model.Level;
+import core.model.TileGrid;
+
+/**
+ * Classifies the pixels of a png map. Reads the raw pixel buffer instead of
+ * calling getPixel() per pixel and splits the rows into bands which get
+ * classified in parallel. The results of the bands are merged in scan order,
+ * so item order, start and finish are the same as with a sequential scan.
+ */
+class MapDecoder {
+
+	private static final int MIN_ROWS_PER_BAND = 64;
+	private static ExecutorService pool;
+
+	private final Pixmap pixmap;
+	private final TileGrid tiles;
+	private final int width;
+	private final int height;
+	private final ByteBuffer pixels;
+	private final int bytesPerPixel;
+	private final boolean collectColors;
+
+	private final IntArray itemSlots = new IntArray();
+	private int startX = -1, startY = -1, finishX = -1, finishY = -1;
+	private int startCount;
+	private IntSet colors;
+
+	/**
+	 * The colors of the map only get collected if asked for (they are only
+	 * used for debug output).
+	 */
+	MapDecoder(Pixmap pixmap, TileGrid tiles, boolean collectColors) {
+		this.pixmap = pixmap;
+		this.tiles = tiles;
+		this.width = pixmap.getWidth();
+		this.height = pixmap.getHeight();
+		this.collectColors = collectColors;
+		if (pixmap.getFormat() == Format.RGBA8888) {
+			bytesPerPixel = 4;
+		} else if (pixmap.getFormat() == Format.RGB888) {
+			bytesPerPixel = 3;
+		} else {
+			bytesPerPixel = 0; // fall back to getPixel()
+		}
+		pixels = bytesPerPixel == 0 ? null : pixmap.getPixels();
+	}
+
+	void decode() {
+		int bandCount = 1;
+		if (bytesPerPixel != 0) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			bandCount = Math.max(1,
+					Math.min(threads * 2, height / MIN_ROWS_PER_BAND));
+		}
+
+		Band[] bands = new Band[bandCount];
+		int rowsPerBand = (height + bandCount - 1) / bandCount;
+		for (int i = 0; i < bandCount; i++) {
+			bands[i] = new Band(i * rowsPerBand, Math.min(height, (i + 1)
+					* rowsPerBand));
+		}
+
+		if (bandCount == 1) {
+			bands[0].run();
+		} else {
+			Future<?>[] futures = new Future<?>[bandCount];
+			for (int i = 0; i < bandCount; i++) {
+				futures[i] = pool().submit(bands[i]);
+			}
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GdxRuntimeException("Map decoding interrupted", e);
+			} catch (ExecutionException e) {
+				throw new GdxRuntimeException("Cannot decode map", e.getCause());
+			}
+		}
+
+		// bands are in scan order (bottom up)
+		for (Band band : bands) {
+			itemSlots.addAll(band.itemSlots);
+			startCount += band.startCount;
+			if (startX < 0 && band.startX >= 0) {
+				startX = band.startX;
+				startY = band.startY;
+			}
+			if (band.finishX >= 0) {
+				finishX = band.finishX;
+				finishY = band.finishY;
+			}
+			if (collectColors) {
+				if (colors == null) {
+					colors = band.colors;
+				} else {
+					colors.putAll(band.colors);
+				}
+			}
+		}
+	}
+
+	/** x, y pairs in scan order **/
+	IntArray getItemSlots() {
+		return itemSlots;
+	}
+
+	boolean hasStart() {
+		return startX >= 0;
+	}
+
+	int getStartX() {
+		return startX;
+	}
+
+	int getStartY() {
+		return startY;
+	}
+
+	/** How many start positions the map has (should be one) **/
+	int getStartCount() {
+		return startCount;
+	}
+
+	boolean hasFinish() {
+		return finishX >= 0;
+	}
+
+	int getFinishX() {
+		return finishX;
+	}
+
+	int getFinishY() {
+		return finishY;
+	}
+
+	/** The different colors of the map, null if not collected **/
+	IntSet getColors() {
+		return colors;
+	}
+
+	private int pixel(int x, int y) {
+		if (bytesPerPixel == 0) {
+			return pixmap.getPixel(x, y);
+		}
+		int i = (y * width + x) * bytesPerPixel;
+		int color = (pixels.get(i) & 0xff) << 24
+				| (pixels.get(i + 1) & 0xff) << 16
+				| (pixels.get(i + 2) & 0xff) << 8;
+		return color | (bytesPerPixel == 4 ? pixels.get(i + 3) & 0xff : 0xff);
+	}
+
+	private static synchronized ExecutorService pool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "MapDecoder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/** A range of level rows [first, last), 0 being the bottom row **/
+	private class Band implements Runnable {
+		final int first;
+		final int last;
+		final IntArray itemSlots = new IntArray();
+		final IntSet colors = collectColors ? new IntSet() : null;
+		int startX = -1, startY = -1, finishX = -1, finishY = -1;
+		int startCount;
+
+		Band(int first, int last) {
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		public void run() {
+			int color;
+			for (int flipY = first; flipY < last; flipY++) {
+				// Pixmap starts topleft, our cam starts bottom left, so we
+				// gotta flip it
+				int y = height - 1 - flipY;
+				for (int x = 0; x < width; x++) {
+					color = pixel(x, y);
+					if (colors != null) {
+						colors.add(color);
+					}
+					if (color == Level.EMPTY) {
+						continue;
+					}
+					if (color == Level.BLOCK) {
+						tiles.setSolid(x, flipY, true);
+					} else if (color == Level.ITEM) {
+						itemSlots.add(x);
+						itemSlots.add(flipY);
+					} else if (color == Level.START_POSITION) {
+						if (startCount++ == 0) {
+							startX = x;
+							startY = flipY;
+						}
+					} else if (color == Level.FINISH_POSITION) {
+						finishX = x;
+						finishY = flipY;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package core.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Music;
+
+/** Music is streamed, so opening it is all there is to do **/
+public class MusicTask extends AssetLoader.Task<Music> {
+
+	private final String path;
+
+	public MusicTask(String path) {
+		this.path = path;
+	}
+
+	@Override
+	protected Music loadSync() {
+		Music music = Gdx.audio.newMusic(Gdx.files.internal(path));
+		music.setLooping(true);
+		return music;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
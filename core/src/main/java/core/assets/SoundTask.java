@@ -0,0 +1,23 @@
+package core.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Sound;
+
+public class SoundTask extends AssetLoader.Task<Sound> {
+
+	private final String path;
+
+	public SoundTask(String path) {
+		this.path = path;
+	}
+
+	@Override
+	protected Sound loadSync() {
+		return Gdx.audio.newSound(Gdx.files.internal(path));
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,42 @@
+package core.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+
+/** Decodes the image off the render thread, only the upload runs on it **/
+public class TextureTask extends AssetLoader.Task<Texture> {
+
+	private final String path;
+	private Pixmap pixmap;
+
+	public TextureTask(String path) {
+		this.path = path;
+	}
+
+	@Override
+	protected void loadAsync() {
+		pixmap = new Pixmap(Gdx.files.internal(path));
+	}
+
+	@Override
+	protected Texture loadSync() {
+		Texture texture = new Texture(pixmap);
+		pixmap.dispose();
+		pixmap = null;
+		return texture;
+	}
+
+	@Override
+	protected void discard() {
+		if (pixmap != null) {
+			pixmap.dispose();
+			pixmap = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
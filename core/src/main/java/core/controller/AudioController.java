@@ -10,6 +10,8 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Logger;
 
+import core.assets.AssetLoader;
+import core.assets.Assets;
 import core.model.World;
 
 public class AudioController {
@@ -25,6 +27,8 @@ public class AudioController {
 
 	/** Sounds/Musics **/
 	private Array<Music> musics;
+	/** Volume per music track, recalculated as the dude moves **/
+	private float[] volumes;
 	private Sound rustle;
 	private Array<Sound> sounds;
 
@@ -35,14 +39,35 @@ public class AudioController {
 	private World world;
 	private boolean colliding;
 
-	public AudioController(World world) {
-		this.world = world;
+	private static final String RUSTLE = "sounds/rustle.wav";
+
+	private Assets assets;
+	private Array<String> musicPaths;
+	private Array<AssetLoader.Task<Music>> musicTasks;
+	private AssetLoader.Task<Sound> rustleTask;
+
+	/**
+	 * Acquires the (shared) music and sounds, which get used once the world
+	 * is set.
+	 */
+	public AudioController(Assets assets) {
+		this.assets = assets;
 		time = 0;
 		colliding = false;
 		loadMusic();
 		loadSounds();
 	}
 
+	public void setWorld(World world) {
+		this.world = world;
+		musics = new Array<Music>();
+		for (AssetLoader.Task<Music> task : musicTasks) {
+			musics.add(task.get());
+		}
+		rustle = rustleTask.get();
+		volumes = new float[musics.size];
+	}
+
 	public void update(float delta) {
 		time += (int) (delta * 1000);
 
@@ -84,89 +109,74 @@ public class AudioController {
 		if (count == 0) {
 			return;
 		}
+		sectorVolumes(lastY, world.getLevel().getHeight(), volumes);
 		Music m;
 		for (int i = 0; i < count; i++) {
-			musics.get(i).pause();
+			m = musics.get(i);
+			if (volumes[i] > 0) {
+				m.setVolume(volumes[i]);
+				m.play();
+			} else {
+				m.pause();
+			}
 		}
+	}
 
+	/**
+	 * Calculates the volume of each music track (one per sector of the level)
+	 * for the given height of the dude. Tracks which should be silent get 0.
+	 */
+	public static void sectorVolumes(float y, int levelHeight, float[] volumes) {
+		int count = volumes.length;
+		for (int i = 0; i < count; i++) {
+			volumes[i] = 0;
+		}
 		if (count == 1) // Shortcut
 		{
-			m = musics.first();
-			m.setVolume(MUSIC_VOLUME);
-			m.play();
-		} else {
-			// First calculate the sector in which the dude is (sector in terms
-			// of music)
-			// Then calculate the dudes position in this sector, if the dude
-			// happens to be
-			// in the sector border offset zones the transition must be
-			// calculated
-			float sectorRange = (float) world.getLevel().getHeight()
-					/ (float) count;
-			float sectorOffset = sectorRange * SECTOR_OFFSET;
-			int sectorIndex = (int) (world.getDude().getY() / sectorRange);
-			float sectorPos = world.getDude().getY()
-					- (sectorIndex * sectorRange);
-			if (time % 3000 == 0) {
-				// logger.debug("World-Height: " +
-				// world.getLevel().getHeight());
-				// logger.debug("Sector-Count: " + count);
-				// logger.debug("Single-Range: " + sectorRange);
-				// logger.debug("DudeY: " + world.getDude().getY());
-				// logger.debug("DudeSector: " + sectorIndex);
-				// logger.debug("DudeSectorPos: " + sectorPos);
-			}
+			volumes[0] = MUSIC_VOLUME;
+			return;
+		}
+		// First calculate the sector in which the dude is (sector in terms
+		// of music)
+		// Then calculate the dudes position in this sector, if the dude
+		// happens to be
+		// in the sector border offset zones the transition must be
+		// calculated
+		float sectorRange = (float) levelHeight / (float) count;
+		float sectorOffset = sectorRange * SECTOR_OFFSET;
+		int sectorIndex = (int) (y / sectorRange);
+		float sectorPos = y - (sectorIndex * sectorRange);
+
+		if (sectorIndex >= count) {
+			return;
+		}
 
-			if (sectorIndex >= count) {
-				return;
+		// Check if the dude is in a sector border zone
+		// If yes calculate sound transitions
+		if (sectorPos - sectorOffset <= 0) {
+			// in lowest sector no transition to sector below
+			if (sectorIndex == 0) {
+				volumes[sectorIndex] = MUSIC_VOLUME;
+			} else {
+				float offsetNormal = sectorPos / sectorOffset;
+				volumes[sectorIndex] = (offsetNormal * 0.5f + 0.5f) * MUSIC_VOLUME;
+				volumes[sectorIndex - 1] = (0.5f - offsetNormal * 0.5f) * MUSIC_VOLUME;
 			}
-
-			m = musics.get(sectorIndex);
-
-			float vol1, vol2;
-			// Check if the dude is in a sector border zone
-			// If yes calculate sound transitions
-			if (sectorPos - sectorOffset <= 0) {
-				// in lowest sector no transition to sector below
-				if (sectorIndex == 0) {
-					m.setVolume(MUSIC_VOLUME);
-					m.play();
-				} else {
-					float offsetNormal = sectorPos / sectorOffset;
-					vol1 = (offsetNormal * 0.5f + 0.5f);
-					m.setVolume(vol1 * MUSIC_VOLUME);
-					m.play();
-					Music m2 = musics.get(sectorIndex - 1);
-					vol2 = (0.5f - offsetNormal * 0.5f);
-					m2.setVolume(vol2 * MUSIC_VOLUME);
-					m2.play();
-					// logger.debug("Above: Vol1: " + vol1 + ", vol2: " + vol2);
-				}
-			} else if (sectorPos + sectorOffset >= sectorRange) {
-				if (sectorIndex == count - 1) {
-					m.setVolume(MUSIC_VOLUME);
-					m.play();
-				} else {
-					float offsetNormal = 1 - ((sectorPos + sectorOffset - sectorRange) / sectorOffset);
-					vol1 = (offsetNormal * 0.5f + 0.5f);
-					m.setVolume(vol1 * MUSIC_VOLUME);
-					m.play();
-					Music m2 = musics.get(sectorIndex + 1);
-					vol2 = (0.5f - offsetNormal * 0.5f);
-					m2.setVolume(vol2 * MUSIC_VOLUME);
-					m2.play();
-					// logger.debug("Below: Vol1: " + vol1 + ", vol2: " + vol2);
-				}
+		} else if (sectorPos + sectorOffset >= sectorRange) {
+			if (sectorIndex == count - 1) {
+				volumes[sectorIndex] = MUSIC_VOLUME;
 			} else {
-				m.setVolume(MUSIC_VOLUME);
-				m.play();
+				float offsetNormal = 1 - ((sectorPos + sectorOffset - sectorRange) / sectorOffset);
+				volumes[sectorIndex] = (offsetNormal * 0.5f + 0.5f) * MUSIC_VOLUME;
+				volumes[sectorIndex + 1] = (0.5f - offsetNormal * 0.5f) * MUSIC_VOLUME;
 			}
-
+		} else {
+			volumes[sectorIndex] = MUSIC_VOLUME;
 		}
 	}
 
 	private void loadSounds() {
-		rustle = Gdx.audio.newSound(Gdx.files.internal("sounds/rustle.wav"));
+		rustleTask = assets.sound(RUSTLE);
 //		sounds = new Array<Sound>();
 //
 //		for (String name : soundNames) {
@@ -180,31 +190,35 @@ public class AudioController {
 	}
 
 	private void loadMusic() {
-		musics = new Array<Music>();
-		Music m;
+		musicPaths = new Array<String>();
+		musicTasks = new Array<AssetLoader.Task<Music>>();
 		try {
 			Scanner s = new Scanner(Gdx.files.internal("music.txt").read());
+			String path;
 			while (s.hasNext()) {
-				m = Gdx.audio.newMusic(Gdx.files.internal("music/"
-						+ s.nextLine()));
-				if (m != null) {
-					m.setLooping(true);
-					musics.add(m);
-				}
+				path = "music/" + s.nextLine();
+				musicPaths.add(path);
+				musicTasks.add(assets.music(path));
 			}
+			s.close();
 		} catch (GdxRuntimeException e) {
 			logger.error("Cannot find music.txt");
 		}
 	}
 
 	public void dispose() {
-		for (Music m : musics) {
-			m.dispose();
+		if (musics != null) {
+			for (Music m : musics) {
+				m.pause();
+			}
+		}
+		for (String path : musicPaths) {
+			assets.release(path);
 		}
 //		for (Sound s : sounds)
 //		{
 //			s.dispose();
 //		}
-		rustle.dispose();
+		assets.release(RUSTLE);
 	}
 }
@@ -1,28 +1,17 @@
 package core.controller;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Logger;
-import com.badlogic.gdx.utils.Pool;
-
-import core.model.Block;
 import core.model.Dude;
 import core.model.Dude.State;
 import core.model.Item;
+import core.model.TileSweep;
 import core.model.World;
 
 public class DudeController {
-	enum Keys {
-		LEFT, RIGHT, JUMP
-	}
-
-	private static final Logger logger = new Logger("DudeController",
-			Logger.DEBUG);
-	private static final long LONG_JUMP_PRESS = 150l;
+	/** How long holding jump keeps the dude going up, in seconds **/
+	private static final float LONG_JUMP_PRESS = 0.15f;
 	private static final float ACCELERATION = 30f;
 	private static final float GRAVITY = -20f;
 	private static final float MAX_JUMP_SPEED = 7f;
@@ -34,27 +23,16 @@ public class DudeController {
 
 	private World world;
 	private Dude dude;
-	private long jumpPressedTime;
+	/** Simulated time since the jump started **/
+	private float jumpTime;
 	private boolean jumpingPressed;
 	private boolean grounded = false;
-	private Array<Block> collidable = new Array<Block>();
-
-	// This is the rectangle pool used in collision detection
-	// Good to avoid instantiation each frame
-	private Pool<Rectangle> rectPool = new Pool<Rectangle>() {
-		@Override
-		protected Rectangle newObject() {
-			return new Rectangle();
-		}
-	};
+	private TileSweep sweep;
 
-	static Map<Keys, Boolean> keys = new HashMap<DudeController.Keys, Boolean>();
-
-	static {
-		keys.put(Keys.LEFT, false);
-		keys.put(Keys.RIGHT, false);
-		keys.put(Keys.JUMP, false);
-	}
+	/** The controls of the current step **/
+	private InputFrame input = new InputFrame();
+	/** Presses and releases waiting for the next step **/
+	private InputQueue events = new InputQueue();
 
 	public Dude getDude() {
 		return dude;
@@ -63,38 +41,100 @@ public class DudeController {
 	public DudeController(World world) {
 		this.world = world;
 		this.dude = world.getDude();
+		this.sweep = new TileSweep(world.getLevel());
 	}
 
 	// ** Key presses and touches **************** //
 
+	/**
+	 * The button (an InputFrame bit) went down. May be called from the input
+	 * thread, it takes effect on the next step.
+	 */
+	public void press(int button) {
+		events.press(button);
+	}
+
+	public void release(int button) {
+		events.release(button);
+	}
+
 	public void leftPressed() {
-		keys.get(keys.put(Keys.LEFT, true));
+		press(InputFrame.LEFT);
 	}
 
 	public void rightPressed() {
-		keys.get(keys.put(Keys.RIGHT, true));
+		press(InputFrame.RIGHT);
 	}
 
 	public void jumpPressed() {
-		keys.get(keys.put(Keys.JUMP, true));
+		press(InputFrame.JUMP);
 	}
 
 	public void leftReleased() {
-		keys.get(keys.put(Keys.LEFT, false));
+		release(InputFrame.LEFT);
 	}
 
 	public void rightReleased() {
-		keys.get(keys.put(Keys.RIGHT, false));
+		release(InputFrame.RIGHT);
 	}
 
 	public void jumpReleased() {
-		keys.get(keys.put(Keys.JUMP, false));
-		jumpingPressed = false;
+		release(InputFrame.JUMP);
+	}
+
+	// ** Jump state, for snapshots (see Rewind) **************** //
+
+	float getJumpTime() {
+		return jumpTime;
+	}
+
+	boolean isJumpingPressed() {
+		return jumpingPressed;
+	}
+
+	boolean isGrounded() {
+		return grounded;
+	}
+
+	void setJump(float jumpTime, boolean jumpingPressed, boolean grounded) {
+		this.jumpTime = jumpTime;
+		this.jumpingPressed = jumpingPressed;
+		this.grounded = grounded;
+	}
+
+	/** The controls the last step followed **/
+	public InputFrame getInput() {
+		return input;
 	}
 
-	/** The main update method **/
+	/** The presses and releases, with how long they waited for a step **/
+	public InputQueue getEvents() {
+		return events;
+	}
+
+	/**
+	 * Simulates one step with the given controls (e.g. from a bot or a
+	 * recording), pending presses and releases get dropped.
+	 */
+	public void update(InputFrame frame, float delta) {
+		events.clear();
+		input.set(frame);
+		step(delta);
+	}
+
+	/**
+	 * The main update method, simulates one step with the presses and
+	 * releases so far. Gets called with {@link FixedTimestep#STEP}, so the
+	 * outcome doesn't depend on the frame rate.
+	 */
 	public void update(float delta) {
-		processInput();
+		events.drain(input);
+		step(delta);
+	}
+
+	private void step(float delta) {
+		dude.savePosition();
+		processInput(delta);
 
 		if (grounded && dude.getState().equals(State.JUMPING)) {
 			dude.setState(State.IDLE);
@@ -104,7 +144,7 @@ public class DudeController {
 		dude.getAcceleration().y = GRAVITY;
 
 		// Debug
-		if (Gdx.input.isKeyPressed(com.badlogic.gdx.Input.Keys.NUM_5)) {
+		if (input.isPressed(InputFrame.DEBUG_REVERSE_GRAVITY)) {
 			dude.getAcceleration().y = -GRAVITY;
 		}
 
@@ -132,7 +172,7 @@ public class DudeController {
 		}
 		
 		// Debug
-		if (Gdx.input.isKeyPressed(com.badlogic.gdx.Input.Keys.NUM_4)) {
+		if (input.isPressed(InputFrame.DEBUG_FLY)) {
 			dude.getVelocity().y = 10;
 		}
 		
@@ -141,93 +181,43 @@ public class DudeController {
 		// update the dude's state time
 		dude.update(delta);
 
-	}
+		world.updateDudeEntity();
 
-	private void checkCollisionWithBlocks(float delta) {
-		// scale velocity to frame units(just for the calculation)
-		dude.getVelocity().scl(delta);
-
-		// Obtain the rectangle from the pool instead of instantiating it
-		Rectangle dudeRect = rectPool.obtain();
-		// set the rectangle to the dude attributes
-		dudeRect.set(dude);
-
-		// first check the movement on the x axis
-		int startX, endX;
-		int startY = (int) dudeRect.y;
-		int endY = (int) (dudeRect.y + dudeRect.height);
-		// determine the direction our dude is heading which will be the
-		// direction to check the collision
-		if (dude.getVelocity().x < 0) {
-			startX = endX = (int) Math.floor(dudeRect.x + dude.getVelocity().x);
-		} else {
-			startX = endX = (int) Math.floor(dudeRect.x + dudeRect.width
-					+ dude.getVelocity().x);
-		}
-
-		populateCollidableBlocks(startX, startY, endX, endY);
-
-		// simulate the dudes movement on the X axis
-		dudeRect.x += dude.getVelocity().x;
-
-		world.getCollisionRects().clear();
-
-		for (Block block : collidable) {
-			if (block == null)
-				continue;
-			if (dudeRect.overlaps(block)) {
-				if (dude.getVelocity().x < 0) {
-					dude.x = (block.x + block.width);
-				} else {
-					dude.x = (block.x - dude.width);
-				}
-				dude.getVelocity().x = 0;
-				world.getCollisionRects().add(block);
-				break;
-			}
-		}
+		// stream in the level around the dude
+		world.getLevel().setFocus(dude.y);
 
-		// reset the position on the X axis
-		dudeRect.x = dude.x;
+	}
 
-		// Now the same thing again for the Y axis
-		startX = (int) dudeRect.x;
-		endX = (int) (dudeRect.x + dudeRect.width);
-		if (dude.getVelocity().y < 0) {
-			startY = endY = (int) Math.floor(dudeRect.y + dude.getVelocity().y);
-		} else {
-			startY = endY = (int) Math.floor(dudeRect.y + dudeRect.height
-					+ dude.getVelocity().y);
+	/**
+	 * Moves the dude by its velocity, first along x, then along y. Each axis
+	 * is swept through the tile grid, so the dude stops exactly at the first
+	 * block in the way however fast it is.
+	 */
+	private void checkCollisionWithBlocks(float delta) {
+		Vector2 velocity = dude.getVelocity();
+		IntArray collisionCells = world.getCollisionCells();
+		collisionCells.clear();
+
+		float dx = sweep.sweepX(dude.x, dude.y, dude.width, dude.height,
+				velocity.x * delta);
+		dude.x += dx;
+		if (sweep.isHit()) {
+			velocity.x = 0;
+			collisionCells.add(sweep.getHitX());
+			collisionCells.add(sweep.getHitY());
 		}
-		populateCollidableBlocks(startX, startY, endX, endY);
 
-		dudeRect.y += dude.getVelocity().y;
-
-		for (Block block : collidable) {
-			if (block == null)
-				continue;
-			if (dudeRect.overlaps(block)) {
-				if (dude.getVelocity().y < 0) {
-					grounded = true;
-					dude.y = (block.y + block.height);
-				} else {
-					dude.y = (block.y - dude.height);
-				}
-				dude.getVelocity().y = 0;
-				world.getCollisionRects().add(block);
-				break;
+		float dy = sweep.sweepY(dude.x, dude.y, dude.width, dude.height,
+				velocity.y * delta);
+		dude.y += dy;
+		if (sweep.isHit()) {
+			if (velocity.y < 0) {
+				grounded = true;
 			}
+			velocity.y = 0;
+			collisionCells.add(sweep.getHitX());
+			collisionCells.add(sweep.getHitY());
 		}
-
-		rectPool.free(dudeRect);
-		
-
-		// update the dudes position
-		dude.add(dude.getVelocity());
-		
-		//
-		// unscale velocity
-		dude.getVelocity().scl(1 / delta);
 	}
 
 	private void checkCollisionWithItems() {
@@ -264,31 +254,21 @@ public class DudeController {
 		}
 	}
 
-	private void populateCollidableBlocks(int startX, int startY, int endX,
-			int endY) {
-		collidable.clear();
-		for (int x = startX; x <= endX; x++) {
-			for (int y = startY; y <= endY; y++) {
-				if (x >= 0 && x < world.getLevel().getWidth() && y >= 0
-						&& y < world.getLevel().getHeight()) {
-					collidable.add(world.getLevel().getBlock(x, y));
-				}
-			}
-		}
-	}
-
 	/** Change The Dude's state and parameters based on input controls **/
-	private boolean processInput() {
-		if (keys.get(Keys.JUMP)) {
+	private boolean processInput(float delta) {
+		if (!input.isPressed(InputFrame.JUMP)) {
+			// the jump only gets longer while the key stays down
+			jumpingPressed = false;
+		} else {
 			if (!dude.getState().equals(State.JUMPING)) {
 				jumpingPressed = true;
-				jumpPressedTime = System.currentTimeMillis();
+				jumpTime = 0;
 				dude.setState(State.JUMPING);
 				dude.getVelocity().y = MAX_JUMP_SPEED;
 				grounded = false;
 			} else {
-				if (jumpingPressed
-						&& ((System.currentTimeMillis() - jumpPressedTime) >= LONG_JUMP_PRESS)) {
+				jumpTime += delta;
+				if (jumpingPressed && jumpTime >= LONG_JUMP_PRESS) {
 					jumpingPressed = false;
 				} else {
 					if (jumpingPressed) {
@@ -297,14 +277,14 @@ public class DudeController {
 				}
 			}
 		}
-		if (keys.get(Keys.LEFT)) {
+		if (input.isPressed(InputFrame.LEFT)) {
 			// left is pressed
 			dude.setFacingLeft(true);
 			if (!dude.getState().equals(State.JUMPING)) {
 				dude.setState(State.WALKING);
 			}
 			dude.getAcceleration().x = -ACCELERATION;
-		} else if (keys.get(Keys.RIGHT)) {
+		} else if (input.isPressed(InputFrame.RIGHT)) {
 			// left is pressed
 			dude.setFacingLeft(false);
 			if (!dude.getState().equals(State.JUMPING)) {
@@ -0,0 +1,37 @@
+package core.controller;
+
+/**
+ * Turns the variable frame time into a number of fixed simulation steps.
+ * The leftover time is kept for the next frame and tells the renderer how
+ * far it is between the last two steps. If the game falls behind (e.g. the
+ * window got dragged) at most {@link #MAX_STEPS} get simulated per frame and
+ * the rest of the time is dropped, so a slow frame can't snowball.
+ */
+public class FixedTimestep {
+
+	/** Length of a simulation step in seconds **/
+	public static final float STEP = 1 / 60f;
+	public static final int MAX_STEPS = 15;
+
+	private float accumulator;
+
+	/** Adds the frame time and returns how many steps to simulate **/
+	public int advance(float delta) {
+		accumulator = Math.min(accumulator + delta, MAX_STEPS * STEP);
+		int steps = (int) (accumulator / STEP);
+		accumulator -= steps * STEP;
+		return steps;
+	}
+
+	/**
+	 * How far the current frame is between the previous and the latest step,
+	 * from 0 to 1.
+	 */
+	public float getAlpha() {
+		return Math.min(1, accumulator / STEP);
+	}
+
+	public void reset() {
+		accumulator = 0;
+	}
+}
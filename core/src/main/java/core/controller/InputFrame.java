@@ -0,0 +1,63 @@
+package core.controller;
+
+/**
+ * The controls held during one simulation step, as bits. The simulation
+ * only ever looks at this, never at Gdx.input, so it can be driven by the
+ * keyboard, a bot, a test or a recording alike.
+ */
+public class InputFrame {
+
+	public static final int LEFT = 1;
+	public static final int RIGHT = 1 << 1;
+	public static final int JUMP = 1 << 2;
+	/** Debug: flies straight up **/
+	public static final int DEBUG_FLY = 1 << 3;
+	/** Debug: turns gravity upside down **/
+	public static final int DEBUG_REVERSE_GRAVITY = 1 << 4;
+
+	private int buttons;
+
+	public InputFrame() {
+	}
+
+	public InputFrame(int buttons) {
+		this.buttons = buttons;
+	}
+
+	public int getButtons() {
+		return buttons;
+	}
+
+	public void setButtons(int buttons) {
+		this.buttons = buttons;
+	}
+
+	public boolean isPressed(int button) {
+		return (buttons & button) != 0;
+	}
+
+	public void press(int button) {
+		buttons |= button;
+	}
+
+	public void release(int button) {
+		buttons &= ~button;
+	}
+
+	/** Presses or releases the button **/
+	public void set(int button, boolean pressed) {
+		if (pressed) {
+			press(button);
+		} else {
+			release(button);
+		}
+	}
+
+	public void set(InputFrame frame) {
+		buttons = frame.buttons;
+	}
+
+	public void clear() {
+		buttons = 0;
+	}
+}
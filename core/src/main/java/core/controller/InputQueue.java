@@ -0,0 +1,114 @@
+package core.controller;
+
+/**
+ * Carries button presses and releases from the input callbacks to the
+ * simulation. A single producer / single consumer ring buffer of primitive
+ * events, each with the time it happened, so neither side locks or
+ * allocates. The simulation drains it once per step (see
+ * {@link #drain(InputFrame)}) and knows how long each event waited.
+ */
+public class InputQueue {
+
+	/** Has to be a power of two **/
+	private static final int CAPACITY = 256;
+	private static final int PRESSED = 1 << 31;
+
+	private final int[] events = new int[CAPACITY];
+	private final long[] times = new long[CAPACITY];
+	/** Next slot to write, only written by the producer **/
+	private volatile int head;
+	/** Next slot to read, only written by the consumer **/
+	private volatile int tail;
+	private int dropped;
+
+	/** Consumer side **/
+	private int held;
+	private long lastLatency;
+	private long maxLatency;
+	private long totalLatency;
+	private int drained;
+
+	/** Producer: the button went down now **/
+	public void press(int button) {
+		offer(button | PRESSED, System.nanoTime());
+	}
+
+	/** Producer: the button went up now **/
+	public void release(int button) {
+		offer(button, System.nanoTime());
+	}
+
+	/**
+	 * Producer: adds an event which happened at the given System.nanoTime().
+	 * Drops it if the consumer is a whole buffer behind.
+	 */
+	public void offer(int event, long time) {
+		int h = head;
+		if (h - tail == CAPACITY) {
+			dropped++;
+			return;
+		}
+		events[h & (CAPACITY - 1)] = event;
+		times[h & (CAPACITY - 1)] = time;
+		head = h + 1;
+	}
+
+	/**
+	 * Consumer: applies the waiting events in order and sets the frame to
+	 * the buttons held, plus the ones pressed since the last drain, so a tap
+	 * shorter than a step still counts for one step.
+	 */
+	public void drain(InputFrame frame) {
+		int t = tail;
+		int h = head;
+		int tapped = 0;
+		long now = h == t ? 0 : System.nanoTime();
+		lastLatency = 0;
+		for (; t != h; t++) {
+			int event = events[t & (CAPACITY - 1)];
+			int button = event & ~PRESSED;
+			if ((event & PRESSED) != 0) {
+				held |= button;
+				tapped |= button;
+			} else {
+				held &= ~button;
+			}
+			long latency = now - times[t & (CAPACITY - 1)];
+			lastLatency = Math.max(lastLatency, latency);
+			maxLatency = Math.max(maxLatency, latency);
+			totalLatency += latency;
+			drained++;
+		}
+		tail = t;
+		frame.setButtons(held | tapped);
+	}
+
+	/** Consumer: drops the waiting events and releases all buttons **/
+	public void clear() {
+		tail = head;
+		held = 0;
+	}
+
+	/**
+	 * The longest an event drained in the last step waited, in nanoseconds
+	 * (0 if there were none).
+	 */
+	public long getLastLatency() {
+		return lastLatency;
+	}
+
+	/** The longest any event waited so far, in nanoseconds **/
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/** The average wait of all events so far, in nanoseconds **/
+	public long getAverageLatency() {
+		return drained == 0 ? 0 : totalLatency / drained;
+	}
+
+	/** Events lost because the buffer was full **/
+	public int getDropped() {
+		return dropped;
+	}
+}
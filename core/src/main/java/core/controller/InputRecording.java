@@ -0,0 +1,186 @@
+package core.controller;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The controls of a run, one {@link InputFrame} per simulation step. The
+ * simulation is deterministic, so playing the frames back from the start
+ * of the level reproduces the run exactly.
+ *
+ * Only the changes get stored: each entry is the bits that flipped (xor to
+ * the previous frame) and for how many steps the result was held, both as
+ * variable length ints. The controls change a few times per second, so a
+ * second of play costs a few bytes.
+ */
+public class InputRecording {
+
+	public static final int MAGIC = 0x50524543; // "PREC"
+	public static final int VERSION = 1;
+
+	private byte[] data = new byte[256];
+	private int size;
+	private int steps;
+
+	/** The buttons of the entry being recorded and how long they are held **/
+	private int buttons;
+	private int held;
+	/** The buttons of the last entry in data **/
+	private int written;
+
+	/** Adds the controls of the next step **/
+	public void record(InputFrame frame) {
+		record(frame.getButtons());
+	}
+
+	public void record(int buttons) {
+		if (held > 0 && buttons != this.buttons) {
+			flush();
+		}
+		this.buttons = buttons;
+		held++;
+		steps++;
+	}
+
+	/** The number of recorded steps **/
+	public int getSteps() {
+		return steps;
+	}
+
+	/** The size of the encoded frames in bytes **/
+	public int getSize() {
+		flush();
+		return size;
+	}
+
+	/** Plays the recording from the first step **/
+	public Player play() {
+		flush();
+		return new Player(this);
+	}
+
+	public void write(OutputStream out) throws IOException {
+		flush();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(steps);
+		data.writeInt(size);
+		data.write(this.data, 0, size);
+		data.flush();
+	}
+
+	public static InputRecording read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not an input recording");
+		}
+		int version = data.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported recording version " + version);
+		}
+		InputRecording recording = new InputRecording();
+		recording.steps = data.readInt();
+		recording.size = data.readInt();
+		recording.data = new byte[Math.max(1, recording.size)];
+		data.readFully(recording.data, 0, recording.size);
+		recording.written = recording.play().last();
+		return recording;
+	}
+
+	/** Writes the entry being recorded, recording goes on with a new one **/
+	private void flush() {
+		if (held == 0) {
+			return;
+		}
+		writeVarInt(buttons ^ written);
+		writeVarInt(held);
+		written = buttons;
+		held = 0;
+	}
+
+	private void writeVarInt(int value) {
+		if (size + 5 > data.length) {
+			byte[] newData = new byte[data.length * 2];
+			System.arraycopy(data, 0, newData, 0, size);
+			data = newData;
+		}
+		while ((value & ~0x7f) != 0) {
+			data[size++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		data[size++] = (byte) value;
+	}
+
+	/** Hands out the recorded frames one step after the other **/
+	public static class Player {
+		private final byte[] data;
+		private final int size;
+		private final int steps;
+		private int offset;
+		private int buttons;
+		private int remaining;
+		private int step;
+
+		private Player(InputRecording recording) {
+			this.data = recording.data;
+			this.size = recording.size;
+			this.steps = recording.steps;
+		}
+
+		/**
+		 * Sets the frame to the controls of the next step. Returns false
+		 * (leaving the frame alone) once all steps have been played.
+		 */
+		public boolean next(InputFrame frame) {
+			while (remaining == 0) {
+				if (offset >= size) {
+					return false;
+				}
+				buttons ^= readVarInt();
+				remaining = readVarInt();
+			}
+			remaining--;
+			step++;
+			frame.setButtons(buttons);
+			return true;
+		}
+
+		/** The number of steps played so far **/
+		public int getStep() {
+			return step;
+		}
+
+		public int getSteps() {
+			return steps;
+		}
+
+		public boolean isDone() {
+			return step >= steps;
+		}
+
+		/** Skips to the end, returns the buttons of the last step **/
+		private int last() {
+			while (offset < size) {
+				buttons ^= readVarInt();
+				readVarInt();
+			}
+			return buttons;
+		}
+
+		private int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+}
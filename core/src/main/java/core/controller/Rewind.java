@@ -0,0 +1,108 @@
+package core.controller;
+
+import com.badlogic.gdx.math.Vector2;
+
+import core.model.Dude;
+import core.model.Dude.State;
+import core.model.World;
+
+/**
+ * Keeps the last {@link #SECONDS} seconds of the dude in a ring of
+ * snapshots, one per step, so time can run backwards. The snapshots live in
+ * primitive arrays allocated up front (about 100 KB), taking and restoring
+ * one only copies a few numbers, so this can stay on all the time.
+ *
+ * A snapshot is the dude (position, velocity, state, facing, state time),
+ * the jump of the controller and the number of items found. Everything
+ * else in the world keeps going.
+ */
+public class Rewind {
+
+	public static final int SECONDS = 60;
+	private static final int CAPACITY = SECONDS * Math.round(1 / FixedTimestep.STEP);
+
+	private static final State[] STATES = State.values();
+	private static final int FACING_LEFT = 1 << 2;
+	private static final int JUMPING_PRESSED = 1 << 3;
+	private static final int GROUNDED = 1 << 4;
+
+	private final float[] x = new float[CAPACITY];
+	private final float[] y = new float[CAPACITY];
+	private final float[] velocityX = new float[CAPACITY];
+	private final float[] velocityY = new float[CAPACITY];
+	private final float[] stateTime = new float[CAPACITY];
+	private final float[] jumpTime = new float[CAPACITY];
+	/** State ordinal in the low bits, plus the flags above **/
+	private final byte[] flags = new byte[CAPACITY];
+	private final int[] foundCount = new int[CAPACITY];
+	/** The slot the next snapshot goes into **/
+	private int head;
+	private int size;
+
+	/** Remembers the current step, dropping the oldest one if full **/
+	public void capture(World world, DudeController controller) {
+		Dude dude = world.getDude();
+		Vector2 velocity = dude.getVelocity();
+		int i = head;
+		x[i] = dude.x;
+		y[i] = dude.y;
+		velocityX[i] = velocity.x;
+		velocityY[i] = velocity.y;
+		stateTime[i] = dude.getStateTime();
+		jumpTime[i] = controller.getJumpTime();
+		int f = dude.getState().ordinal();
+		if (dude.isFacingLeft()) {
+			f |= FACING_LEFT;
+		}
+		if (controller.isJumpingPressed()) {
+			f |= JUMPING_PRESSED;
+		}
+		if (controller.isGrounded()) {
+			f |= GROUNDED;
+		}
+		flags[i] = (byte) f;
+		foundCount[i] = world.getFoundCount();
+		head = (i + 1) % CAPACITY;
+		size = Math.min(size + 1, CAPACITY);
+	}
+
+	/**
+	 * Goes back to the last snapshot and drops it, so each call undoes one
+	 * step. Returns false if there is nothing left to go back to.
+	 */
+	public boolean rewind(World world, DudeController controller) {
+		if (size == 0) {
+			return false;
+		}
+		head = (head + CAPACITY - 1) % CAPACITY;
+		size--;
+		int i = head;
+		Dude dude = world.getDude();
+		// interpolate from where the dude is now
+		dude.savePosition();
+		dude.x = x[i];
+		dude.y = y[i];
+		dude.getVelocity().set(velocityX[i], velocityY[i]);
+		int f = flags[i];
+		dude.setState(STATES[f & 3]);
+		dude.setStateTime(stateTime[i]);
+		dude.setFacingLeft((f & FACING_LEFT) != 0);
+		controller.setJump(jumpTime[i], (f & JUMPING_PRESSED) != 0,
+				(f & GROUNDED) != 0);
+		world.setFoundCount(foundCount[i]);
+		world.setCollisionItem(null);
+		world.updateDudeEntity();
+		world.getLevel().setFocus(dude.y);
+		return true;
+	}
+
+	/** The number of steps that can be undone **/
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+}
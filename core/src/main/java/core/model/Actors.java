@@ -0,0 +1,271 @@
+package core.model;
+
+import core.model.Dude.State;
+
+/**
+ * Everything that walks through the pit like the dude does (ghosts, NPCs,
+ * bots), stored as a structure of arrays: one primitive array per field,
+ * indexed by slot. The batch update walks the arrays linearly, so many
+ * actors stay cheap and nothing is allocated per actor and frame.
+ *
+ * Slot 0 is the dude. The dude is a Rectangle with public fields, so it
+ * can't be a view on these arrays; instead World copies it into slot 0
+ * after the DudeController moved it, and the batch update leaves slot 0
+ * alone.
+ */
+public class Actors {
+
+	/** Input bits, what the actor wants to do this step **/
+	public static final int INPUT_LEFT = 1;
+	public static final int INPUT_RIGHT = 1 << 1;
+	public static final int INPUT_JUMP = 1 << 2;
+
+	/** Flag bits **/
+	public static final byte FACING_LEFT = 1;
+	public static final byte GROUNDED = 1 << 1;
+	/** Walks on its own, turning around at walls **/
+	public static final byte BOT = 1 << 2;
+
+	public static final float WIDTH = Dude.WIDTH;
+	public static final float HEIGHT = Dude.HEIGHT;
+
+	private static final float ACCELERATION = 30f;
+	private static final float GRAVITY = -20f;
+	private static final float JUMP_SPEED = 7f;
+	private static final float DAMP = 0.80f;
+	private static final float MAX_VEL = 6f;
+
+	private static final State[] STATES = State.values();
+
+	private final SpatialIndex index;
+	private TileSweep sweep;
+
+	private float[] x, y, vx, vy, stateTime;
+	/** The positions before the last step, for drawing in between **/
+	private float[] previousX, previousY;
+	private byte[] state, flags;
+	private int[] input, entity;
+	/** Slot of each entity id of the index, -1 for entities which are not actors **/
+	private int[] slots = new int[16];
+	private int count;
+
+	public Actors(SpatialIndex index) {
+		this(index, 16);
+	}
+
+	public Actors(SpatialIndex index, int capacity) {
+		this.index = index;
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = -1;
+		}
+		grow(Math.max(1, capacity));
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/** Adds an actor standing at the given position, returns its slot **/
+	public int add(float x, float y, byte flags) {
+		if (count == this.x.length) {
+			grow(count * 2);
+		}
+		int slot = count++;
+		this.x[slot] = x;
+		this.y[slot] = y;
+		previousX[slot] = x;
+		previousY[slot] = y;
+		vx[slot] = 0;
+		vy[slot] = 0;
+		stateTime[slot] = 0;
+		state[slot] = (byte) State.IDLE.ordinal();
+		this.flags[slot] = flags;
+		input[slot] = 0;
+		int id = index.add(x, y, WIDTH, HEIGHT);
+		entity[slot] = id;
+		if (id >= slots.length) {
+			int[] newSlots = new int[Math.max(id + 1, slots.length * 2)];
+			System.arraycopy(slots, 0, newSlots, 0, slots.length);
+			for (int i = slots.length; i < newSlots.length; i++) {
+				newSlots[i] = -1;
+			}
+			slots = newSlots;
+		}
+		slots[id] = slot;
+		return slot;
+	}
+
+	public float getX(int slot) {
+		return x[slot];
+	}
+
+	public float getY(int slot) {
+		return y[slot];
+	}
+
+	/** The position between the last two steps, see Dude#getInterpolatedX **/
+	public float getInterpolatedX(int slot, float alpha) {
+		return previousX[slot] + (x[slot] - previousX[slot]) * alpha;
+	}
+
+	public float getInterpolatedY(int slot, float alpha) {
+		return previousY[slot] + (y[slot] - previousY[slot]) * alpha;
+	}
+
+	public float getVelocityX(int slot) {
+		return vx[slot];
+	}
+
+	public float getVelocityY(int slot) {
+		return vy[slot];
+	}
+
+	public State getState(int slot) {
+		return STATES[state[slot]];
+	}
+
+	public float getStateTime(int slot) {
+		return stateTime[slot];
+	}
+
+	public boolean isFacingLeft(int slot) {
+		return (flags[slot] & FACING_LEFT) != 0;
+	}
+
+	public boolean isBot(int slot) {
+		return (flags[slot] & BOT) != 0;
+	}
+
+	/** The INPUT_ bits the actor follows in the next update **/
+	public void setInput(int slot, int input) {
+		this.input[slot] = input;
+	}
+
+	/** The id of the actor in the entity index **/
+	public int getEntity(int slot) {
+		return entity[slot];
+	}
+
+	/** The slot of an entity, -1 if it is not an actor **/
+	public int getSlot(int entity) {
+		return entity < slots.length ? slots[entity] : -1;
+	}
+
+	/** Copies the dude into slot 0 and moves its entity **/
+	public void setDude(Dude dude) {
+		x[0] = dude.x;
+		y[0] = dude.y;
+		vx[0] = dude.getVelocity().x;
+		vy[0] = dude.getVelocity().y;
+		stateTime[0] = dude.getStateTime();
+		state[0] = (byte) dude.getState().ordinal();
+		flags[0] = dude.isFacingLeft() ? FACING_LEFT : 0;
+		index.update(entity[0], dude.x, dude.y, dude.width, dude.height);
+	}
+
+	/** Moves all actors but the dude one step **/
+	public void update(float delta, Level level) {
+		if (sweep == null || sweep.getLevel() != level) {
+			sweep = new TileSweep(level);
+		}
+		for (int i = 1; i < count; i++) {
+			previousX[i] = x[i];
+			previousY[i] = y[i];
+			if ((flags[i] & BOT) != 0) {
+				input[i] = (flags[i] & FACING_LEFT) != 0 ? INPUT_LEFT
+						: INPUT_RIGHT;
+			}
+			int in = input[i];
+			boolean grounded = (flags[i] & GROUNDED) != 0;
+			State previous = STATES[state[i]];
+			State next;
+
+			float ax = 0;
+			if ((in & INPUT_LEFT) != 0) {
+				ax = -ACCELERATION;
+				flags[i] |= FACING_LEFT;
+			} else if ((in & INPUT_RIGHT) != 0) {
+				ax = ACCELERATION;
+				flags[i] &= ~FACING_LEFT;
+			}
+			vx[i] += ax * delta;
+			if (ax == 0) {
+				vx[i] *= DAMP;
+			}
+			vx[i] = Math.max(-MAX_VEL, Math.min(MAX_VEL, vx[i]));
+			if ((in & INPUT_JUMP) != 0 && grounded) {
+				vy[i] = JUMP_SPEED;
+			}
+			vy[i] += GRAVITY * delta;
+
+			// move one axis after the other, stopping at solid cells
+			x[i] += sweep.sweepX(x[i], y[i], WIDTH, HEIGHT, vx[i] * delta);
+			if (sweep.isHit()) {
+				vx[i] = 0;
+				if ((flags[i] & BOT) != 0) {
+					flags[i] ^= FACING_LEFT;
+				}
+			}
+			y[i] += sweep.sweepY(x[i], y[i], WIDTH, HEIGHT, vy[i] * delta);
+			grounded = sweep.isHit() && vy[i] < 0;
+			if (sweep.isHit()) {
+				vy[i] = 0;
+			}
+			flags[i] = (byte) (grounded ? flags[i] | GROUNDED : flags[i]
+					& ~GROUNDED);
+
+			if (!grounded) {
+				next = State.JUMPING;
+			} else if (ax != 0) {
+				next = State.WALKING;
+			} else {
+				next = State.IDLE;
+			}
+			if (next != previous) {
+				state[i] = (byte) next.ordinal();
+				stateTime[i] = 0;
+			}
+			stateTime[i] += delta;
+
+			index.update(entity[i], x[i], y[i], WIDTH, HEIGHT);
+		}
+	}
+
+	private void grow(int capacity) {
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		previousX = copy(previousX, capacity);
+		previousY = copy(previousY, capacity);
+		vx = copy(vx, capacity);
+		vy = copy(vy, capacity);
+		stateTime = copy(stateTime, capacity);
+		state = copy(state, capacity);
+		flags = copy(flags, capacity);
+		input = copy(input, capacity);
+		entity = copy(entity, capacity);
+	}
+
+	private float[] copy(float[] array, int length) {
+		float[] copy = new float[length];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, count);
+		}
+		return copy;
+	}
+
+	private byte[] copy(byte[] array, int length) {
+		byte[] copy = new byte[length];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, count);
+		}
+		return copy;
+	}
+
+	private int[] copy(int[] array, int length) {
+		int[] copy = new int[length];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, count);
+		}
+		return copy;
+	}
+}
@@ -8,6 +8,10 @@ public class Block extends Rectangle {
 	public static final float SIZE = 1f;
 
 	public Block(Vector2 position) {
-		set(position.x, position.y, SIZE, SIZE);
+		this(position.x, position.y);
+	}
+
+	public Block(float x, float y) {
+		set(x, y, SIZE, SIZE);
 	}
 }
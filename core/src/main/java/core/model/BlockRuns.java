@@ -0,0 +1,153 @@
+package core.model;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The solid tiles merged into maximal rectangles, so long floors and walls
+ * are a few large shapes instead of hundreds of single blocks. The merging
+ * is done per chunk of the tile grid (rectangles never cross a chunk
+ * border), so it works with streamed grids: a chunk gets merged the first
+ * time it is queried after it was loaded.
+ */
+public class BlockRuns {
+
+	private final TileGrid tiles;
+	/** Per chunk: x, y, width, height of each rectangle **/
+	private final int[][] rects;
+	private final int[] counts;
+	/** The chunk version each entry was built from, 0 if not built **/
+	private final long[] versions;
+	private int lastFirst = -1;
+
+	private long[] scratch;
+	private final IntArray buildBuffer = new IntArray();
+
+	public BlockRuns(TileGrid tiles) {
+		this.tiles = tiles;
+		int chunks = tiles.getChunkCount();
+		rects = new int[chunks][];
+		counts = new int[chunks];
+		versions = new long[chunks];
+		scratch = new long[tiles.getWordsPerRow() * TileGrid.CHUNK_HEIGHT];
+	}
+
+	/** Merges every chunk, for grids that are completely in memory **/
+	public void buildAll() {
+		for (int c = 0; c < rects.length; c++) {
+			chunk(c);
+		}
+	}
+
+	/**
+	 * Adds x, y, width, height of every rectangle overlapping the given cell
+	 * range (inclusive) to out. Returns the number of rectangles added.
+	 */
+	public int query(int x1, int y1, int x2, int y2, IntArray out) {
+		if (y2 < 0 || y1 >= tiles.getHeight()) {
+			return 0;
+		}
+		int first = Math.max(0, y1) / TileGrid.CHUNK_HEIGHT;
+		int last = Math.min(tiles.getHeight() - 1, y2) / TileGrid.CHUNK_HEIGHT;
+		if (first != lastFirst) {
+			lastFirst = first;
+			dropUnloaded();
+		}
+		int found = 0;
+		for (int c = first; c <= last; c++) {
+			int[] r = chunk(c);
+			int count = counts[c];
+			for (int i = 0; i < count; i += 4) {
+				int x = r[i], y = r[i + 1];
+				if (x <= x2 && x + r[i + 2] > x1 && y <= y2 && y + r[i + 3] > y1) {
+					out.add(x);
+					out.add(y);
+					out.add(r[i + 2]);
+					out.add(r[i + 3]);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	/** The rectangles of a chunk, rebuilt if the chunk changed **/
+	private int[] chunk(int chunk) {
+		if (versions[chunk] != tiles.getChunkVersion(chunk)) {
+			build(chunk, tiles.getChunkBits(chunk));
+		}
+		return rects[chunk];
+	}
+
+	/** Forgets the rectangles of chunks the grid dropped **/
+	private void dropUnloaded() {
+		for (int c = 0; c < rects.length; c++) {
+			if (versions[c] != 0 && !tiles.isResident(c)) {
+				rects[c] = null;
+				counts[c] = 0;
+				versions[c] = 0;
+			}
+		}
+	}
+
+	private void build(int chunk, long[] bits) {
+		int width = tiles.getWidth();
+		int wordsPerRow = tiles.getWordsPerRow();
+		int baseRow = chunk * TileGrid.CHUNK_HEIGHT;
+		int rows = Math.min(TileGrid.CHUNK_HEIGHT, tiles.getHeight() - baseRow);
+		long[] free = scratch;
+		System.arraycopy(bits, 0, free, 0, free.length);
+		IntArray out = buildBuffer;
+		out.clear();
+
+		for (int r = 0; r < rows; r++) {
+			for (int x = 0; x < width; x++) {
+				if (!isSet(free, wordsPerRow, x, r)) {
+					continue;
+				}
+				// grow to the right as far as possible
+				int x2 = x;
+				while (x2 + 1 < width && isSet(free, wordsPerRow, x2 + 1, r)) {
+					x2++;
+				}
+				// then grow upwards while the whole span is solid
+				int r2 = r;
+				while (r2 + 1 < rows && isSpanSet(free, wordsPerRow, x, x2, r2 + 1)) {
+					r2++;
+				}
+				for (int rr = r; rr <= r2; rr++) {
+					for (int xx = x; xx <= x2; xx++) {
+						free[rr * wordsPerRow + (xx >>> 6)] &= ~(1L << xx);
+					}
+				}
+				out.add(x);
+				out.add(baseRow + r);
+				out.add(x2 - x + 1);
+				out.add(r2 - r + 1);
+				x = x2;
+			}
+		}
+
+		int[] r = rects[chunk];
+		if (r == null || r.length < out.size) {
+			r = new int[out.size];
+			rects[chunk] = r;
+		}
+		System.arraycopy(out.items, 0, r, 0, out.size);
+		counts[chunk] = out.size;
+		versions[chunk] = bits[free.length];
+	}
+
+	private static boolean isSet(long[] bits, int wordsPerRow, int x, int row) {
+		return (bits[row * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	private static boolean isSpanSet(long[] bits, int wordsPerRow, int x1,
+			int x2, int row) {
+		for (int x = x1; x <= x2; x++) {
+			if (!isSet(bits, wordsPerRow, x, row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
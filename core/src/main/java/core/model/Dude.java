@@ -16,6 +16,8 @@ public class Dude extends Rectangle {
 	private State state = State.IDLE;
 	private boolean facingLeft = true;
 	private float stateTime = 0;
+	/** Where the dude was before the last simulation step **/
+	private float previousX, previousY;
 	
 	public Vector2 getAcceleration() {
 		return acceleration;
@@ -64,6 +66,25 @@ public class Dude extends Rectangle {
 	public Dude(Vector2 position)
 	{
 		set(position.x, position.y, WIDTH, HEIGHT);
+		savePosition();
+	}
+
+	/** Remembers the position before a simulation step **/
+	public void savePosition() {
+		previousX = x;
+		previousY = y;
+	}
+
+	/**
+	 * The position between the previous and the current step, alpha being
+	 * 0 for the previous one.
+	 */
+	public float getInterpolatedX(float alpha) {
+		return previousX + (x - previousX) * alpha;
+	}
+
+	public float getInterpolatedY(float alpha) {
+		return previousY + (y - previousY) * alpha;
 	}
 
 	public void update(float delta) {
@@ -0,0 +1,160 @@
+package core.model;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * The items of a level, keyed by their packed cell. Items are rare, so
+ * instead of a width x height grid this keeps the keys sorted row by row
+ * (for range scans) plus an open addressing hash table on top (for cell
+ * lookups). Nothing gets boxed.
+ */
+public class ItemIndex {
+
+	private long[] keys;
+	private Item[] items;
+	private int size;
+
+	/** Slots hold index + 1, 0 is empty **/
+	private int[] table;
+	private int mask;
+	private boolean dirty = true;
+
+	public ItemIndex() {
+		this(16);
+	}
+
+	public ItemIndex(int capacity) {
+		keys = new long[Math.max(1, capacity)];
+		items = new Item[keys.length];
+	}
+
+	/** Packs a cell into a key which sorts by row first, then column **/
+	public static long key(int x, int y) {
+		return ((long) y << 32) | (x & 0xffffffffL);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void add(int x, int y, Item item) {
+		if (size == keys.length) {
+			long[] newKeys = new long[size * 2];
+			Item[] newItems = new Item[size * 2];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(items, 0, newItems, 0, size);
+			keys = newKeys;
+			items = newItems;
+		}
+		// the loaders add in row order, so this hardly ever shifts
+		long key = key(x, y);
+		int i = size;
+		while (i > 0 && keys[i - 1] > key) {
+			keys[i] = keys[i - 1];
+			items[i] = items[i - 1];
+			i--;
+		}
+		keys[i] = key;
+		items[i] = item;
+		size++;
+		dirty = true;
+	}
+
+	public Item getItem(int index) {
+		return items[index];
+	}
+
+	public int getX(int index) {
+		return (int) keys[index];
+	}
+
+	public int getY(int index) {
+		return (int) (keys[index] >>> 32);
+	}
+
+	/** Returns the item in the given cell or null **/
+	public Item get(int x, int y) {
+		int index = indexOf(x, y);
+		return index < 0 ? null : items[index];
+	}
+
+	/** Returns the index of the item in the given cell or -1 **/
+	public int indexOf(int x, int y) {
+		if (dirty) {
+			rehash();
+		}
+		long key = key(x, y);
+		int slot = hash(key);
+		int index;
+		while ((index = table[slot]) != 0) {
+			if (keys[index - 1] == key) {
+				return index - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/** The index of the first item in row y or above (size if none) **/
+	public int firstInRow(int y) {
+		long key = key(0, y);
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Adds the items inside the given cell range (inclusive) to out and
+	 * returns how many were added.
+	 */
+	public int query(int x1, int y1, int x2, int y2, Array<Item> out) {
+		int count = 0;
+		for (int i = firstInRow(y1); i < size; i++) {
+			int y = getY(i);
+			if (y > y2) {
+				break;
+			}
+			int x = getX(i);
+			if (x >= x1 && x <= x2) {
+				out.add(items[i]);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void rehash() {
+		int capacity = 2;
+		while (capacity < size * 2) {
+			capacity <<= 1;
+		}
+		if (table == null || table.length != capacity) {
+			table = new int[capacity];
+		} else {
+			Arrays.fill(table, 0);
+		}
+		mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(keys[i]);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+		dirty = false;
+	}
+
+	private int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -1,18 +1,15 @@
 package core.model;
 
-import java.util.HashSet;
-import java.util.Scanner;
-import java.util.Set;
-
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.GdxRuntimeException;
-import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.IntArray;
 
+/**
+ * The tiles, items, start and finish of a level. Plain data without any
+ * Gdx calls, so levels can be simulated without a GL context (see
+ * core.assets.LevelLoader for loading them from the map files).
+ */
 public class Level {
 
 	public static int EMPTY = 0x00000000;
@@ -21,15 +18,19 @@ public class Level {
 	public static int FINISH_POSITION = 0x0000ffff; // BLUE
 	public static int BLOCK = 0x000000ff; // BLACK
 
-	private static final Logger logger = new Logger("Level", Logger.DEBUG);
+	/** Size of the block flyweight cache, has to be a power of two **/
+	private static final int BLOCK_CACHE_SIZE = 1 << 12;
+
 	private int width;
 	private int height;
 	private Vector2 startPosition;
 	private Vector2 finishPosition = null;
-	private Block[][] blocks;
-	private Item[][] items;
-	private TextureAtlas atlas;
-	private Array<TextureRegion> itemImages;
+	private TileGrid tiles;
+	private BlockRuns runs;
+	private final Block[] blockCache = new Block[BLOCK_CACHE_SIZE];
+	private ItemIndex items;
+	/** The cells found for items (x, y pairs), in the order of items.txt **/
+	private IntArray itemSlots = new IntArray();
 
 	public int getWidth() {
 		return width;
@@ -47,28 +48,64 @@ public class Level {
 		this.height = height;
 	}
 
-	public Block[][] getBlocks() {
-		return blocks;
+	public TileGrid getTiles() {
+		return tiles;
 	}
 
-	public void setBlocks(Block[][] blocks) {
-		this.blocks = blocks;
+	/** The solid tiles merged into rectangles **/
+	public BlockRuns getRuns() {
+		return runs;
 	}
 
-	public Block getBlock(int x, int y) {
-		return blocks[x][y];
+	public boolean isSolid(int x, int y) {
+		return tiles.isSolid(x, y);
 	}
 
-	public Item[][] getitems() {
-		return items;
+	/**
+	 * Puts a block into the cell (see {@link TileGrid#edit}). Only the chunk
+	 * of the cell gets rebuilt by collision and rendering, on their next
+	 * query. Returns false if the cell was solid already.
+	 */
+	public boolean setTile(int x, int y) {
+		return tiles.edit(x, y, true);
+	}
+
+	/** Removes the block from the cell, returns false if there was none **/
+	public boolean clearTile(int x, int y) {
+		return tiles.edit(x, y, false);
+	}
+
+	/**
+	 * Keeps the tiles around the given row in memory, tiles further away may
+	 * be dropped. See {@link TileGrid#focus(int)}.
+	 */
+	public void setFocus(float y) {
+		tiles.focus((int) y);
+	}
+
+	/**
+	 * Blocks are only created on demand and kept in a small direct mapped
+	 * cache, the real storage is the tile grid. Returns null for empty cells.
+	 */
+	public Block getBlock(int x, int y) {
+		if (!tiles.isSolid(x, y)) {
+			return null;
+		}
+		int slot = (x * 73856093 ^ y * 19349663) & (BLOCK_CACHE_SIZE - 1);
+		Block block = blockCache[slot];
+		if (block == null || block.x != x || block.y != y) {
+			block = new Block(x, y);
+			blockCache[slot] = block;
+		}
+		return block;
 	}
 
-	public void setItems(Item[][] items) {
-		this.items = items;
+	public ItemIndex getItems() {
+		return items;
 	}
 
 	public Item getItem(int x, int y) {
-		return items[x][y];
+		return items.get(x, y);
 	}
 
 	public Vector2 getStartPosition() {
@@ -79,94 +116,63 @@ public class Level {
 		return finishPosition;
 	}
 
-	public Level(String map, String itemsFile) {
-		loadItemImages(itemsFile);
-		loadImageWorld(map);
-	}
-
-	private void loadItemImages(String itemsFile) {
-		try {
-			logger.debug(itemsFile);
-			itemImages = new Array<TextureRegion>();
-			Scanner s = new Scanner(Gdx.files.internal(itemsFile).read());
-			atlas = new TextureAtlas(
-					Gdx.files.internal("images/textures/textures.pack"));
-			String imageName;
-			TextureRegion image;
-			while (s.hasNext()) {
-				imageName = s.nextLine();
-				logger.debug(imageName);
-				image = atlas.findRegion(imageName);
-				if (image == null) {
-					logger.error("Cannot find image with name " + imageName);
-				} else {
-					itemImages.add(image);
-				}
-			}
-		} catch (GdxRuntimeException e) {
-			logger.error("Error reading items.txt", e);
-			System.exit(-1);
-		}
-
-	}
-
-	private void loadImageWorld(String map) {
-
-		Pixmap pm = new Pixmap(Gdx.files.internal("maps/" + map));
-		width = pm.getWidth();
-		height = pm.getHeight();
-		logger.debug("Map width: " + width);
-		logger.debug("Map height: " + height);
-		blocks = new Block[width][height];
-		items = new Item[width][height];
-		int flipY, color;
-		int itemCount = 0;
-		Set<Integer> colors = new HashSet<Integer>();
-		for (int y = (height - 1); y >= 0; y--) {
-			for (int x = 0; x < width; x++) {
-				color = pm.getPixel(x, y);
-				colors.add(color);
-				if (color != EMPTY) {
-					flipY = height - 1 - y; // Pixmap starts topleft, our cam
-											// starts bottom left, so we gotta
-											// flip it
-					if (color == BLOCK) {
-						blocks[x][flipY] = new Block(new Vector2(x, flipY));
-					} else if (color == ITEM) {
-						if (itemImages.size > itemCount) {
-							items[x][flipY] = new Item(new Vector2(x, flipY),
-									itemImages.get(itemCount++));
-						}
-					} else if (color == START_POSITION) {
-						if (startPosition != null) {
-							logger.error("Start position already set, but found another one (why?)");
-						} else {
-							startPosition = new Vector2(x, flipY);
-						}
-					} else if (color == FINISH_POSITION) {
-						finishPosition = new Vector2(x, flipY);
-					}
-				}
-			}
+	/**
+	 * A level from a compiled map. Only the chunks around the start get read
+	 * up front, the others get streamed from the buffer as the focus moves.
+	 */
+	public Level(LevelFormat format) {
+		width = format.getWidth();
+		height = format.getHeight();
+		tiles = new TileGrid(width, height, format);
+		items = new ItemIndex();
+
+		itemSlots.ensureCapacity(format.getItemCount() * 2);
+		for (int i = 0; i < format.getItemCount(); i++) {
+			itemSlots.add(format.getItemX(i));
+			itemSlots.add(format.getItemY(i));
 		}
 
-		pm.dispose();
-
-		if (getStartPosition() == null) {
-			logger.error("No start position found in map");
-			startPosition = new Vector2(0, 0);
-			// Gdx.app.exit();
+		startPosition = format.hasStart() ? new Vector2(format.getStartX(),
+				format.getStartY()) : new Vector2(0, 0);
+		if (format.hasFinish()) {
+			finishPosition = new Vector2(format.getFinishX(),
+					format.getFinishY());
 		}
-
-		String temp = "Different colors in map:";
-		for (Integer c : colors) {
-			temp += " 0x" + Integer.toHexString(c);
+		tiles.loadAround((int) startPosition.y);
+		// streamed chunks get merged once they are needed
+		runs = new BlockRuns(tiles);
+	}
+
+	/**
+	 * A level from tiles which are completely in memory (e.g. decoded from a
+	 * png map). The item slots are (x, y) pairs, the finish may be null.
+	 */
+	public Level(TileGrid tiles, IntArray itemSlots, Vector2 startPosition,
+			Vector2 finishPosition) {
+		this.tiles = tiles;
+		this.width = tiles.getWidth();
+		this.height = tiles.getHeight();
+		this.itemSlots = itemSlots;
+		this.startPosition = startPosition;
+		this.finishPosition = finishPosition;
+		items = new ItemIndex();
+		runs = new BlockRuns(tiles);
+		runs.buildAll();
+	}
+
+	/** Creates the items, the n-th item found in the map gets the n-th image **/
+	public void setItemImages(Array<TextureRegion> itemImages) {
+		int count = Math.min(itemSlots.size / 2, itemImages.size);
+		items = new ItemIndex(count);
+		for (int i = 0; i < count; i++) {
+			int x = itemSlots.get(i * 2);
+			int y = itemSlots.get(i * 2 + 1);
+			items.add(x, y, new Item(new Vector2(x, y), itemImages.get(i)));
 		}
-		logger.debug(temp);
 	}
 
 	public void dispose() {
-		atlas.dispose();
+		tiles.dispose();
 	}
 
 	// private void loadDemoWorld() {
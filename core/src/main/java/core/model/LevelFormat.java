@@ -0,0 +1,198 @@
+package core.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The compiled binary map format (*.pit). Maps are still drawn as png, but
+ * util.LevelCompiler turns them into this format offline, so loading a level
+ * is a plain read of one byte per tile instead of a png decode.
+ *
+ * Layout (big endian): magic, version, width, height, startX, startY,
+ * finishX, finishY (-1 if missing), item slot count, item slots as (x, y)
+ * pairs in the order they get their images, then width * height tile codes,
+ * row by row starting at the bottom (y = 0), left to right. Being fixed size
+ * rows, the tiles can be streamed in chunks straight from the buffer.
+ *
+ */
+public class LevelFormat implements TileGrid.Source {
+
+	public static final int MAGIC = 0x50495431; // "PIT1"
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".pit";
+
+	public static final byte TILE_EMPTY = 0;
+	public static final byte TILE_BLOCK = 1;
+	public static final byte TILE_ITEM = 2;
+	public static final byte TILE_START = 3;
+	public static final byte TILE_FINISH = 4;
+
+	private static final int HEADER_SIZE = 9 * 4;
+	private static final int NONE = -1;
+
+	private final ByteBuffer buffer;
+	private final int width;
+	private final int height;
+	private final int itemCount;
+	private final int tilesOffset;
+
+	public LevelFormat(ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a compiled map");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Unsupported map version "
+					+ buffer.getInt(4));
+		}
+		width = buffer.getInt(8);
+		height = buffer.getInt(12);
+		itemCount = buffer.getInt(32);
+		tilesOffset = HEADER_SIZE + itemCount * 8;
+		if (buffer.capacity() < tilesOffset + width * height) {
+			throw new IllegalArgumentException("Truncated map");
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean hasStart() {
+		return buffer.getInt(16) != NONE;
+	}
+
+	public int getStartX() {
+		return buffer.getInt(16);
+	}
+
+	public int getStartY() {
+		return buffer.getInt(20);
+	}
+
+	public boolean hasFinish() {
+		return buffer.getInt(24) != NONE;
+	}
+
+	public int getFinishX() {
+		return buffer.getInt(24);
+	}
+
+	public int getFinishY() {
+		return buffer.getInt(28);
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public int getItemX(int index) {
+		return buffer.getInt(HEADER_SIZE + index * 8);
+	}
+
+	public int getItemY(int index) {
+		return buffer.getInt(HEADER_SIZE + index * 8 + 4);
+	}
+
+	public byte getTile(int x, int y) {
+		return buffer.get(tilesOffset + y * width + x);
+	}
+
+	/**
+	 * Copies the tile codes of row y into the given array, which has to be at
+	 * least width long.
+	 */
+	public void getRow(int y, byte[] row) {
+		ByteBuffer b = buffer.duplicate();
+		b.position(tilesOffset + y * width);
+		b.get(row, 0, width);
+	}
+
+	@Override
+	public void readRows(int firstRow, int rows, long[] bits, int wordsPerRow) {
+		ByteBuffer b = buffer.duplicate();
+		b.position(tilesOffset + firstRow * width);
+		byte[] row = new byte[width];
+		for (int r = 0; r < rows; r++) {
+			b.get(row, 0, width);
+			int offset = r * wordsPerRow;
+			for (int x = 0; x < width; x++) {
+				if (row[x] == TILE_BLOCK) {
+					bits[offset + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+	}
+
+	/** Maps a png color of the map convention to its tile code **/
+	public static byte tileCode(int color) {
+		if (color == Level.BLOCK) {
+			return TILE_BLOCK;
+		} else if (color == Level.ITEM) {
+			return TILE_ITEM;
+		} else if (color == Level.START_POSITION) {
+			return TILE_START;
+		} else if (color == Level.FINISH_POSITION) {
+			return TILE_FINISH;
+		}
+		return TILE_EMPTY;
+	}
+
+	/** The name of the compiled map belonging to a png map **/
+	public static String compiledName(String map) {
+		int dot = map.lastIndexOf('.');
+		return (dot < 0 ? map : map.substring(0, dot)) + EXTENSION;
+	}
+
+	/**
+	 * Writes a compiled map. The tiles are indexed y * width + x with y = 0
+	 * being the bottom row. As with the png loader the first start position
+	 * and the last finish position win.
+	 */
+	public static void write(OutputStream out, int width, int height,
+			byte[] tiles) throws IOException {
+		int startX = NONE, startY = NONE, finishX = NONE, finishY = NONE;
+		int itemCount = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				byte tile = tiles[y * width + x];
+				if (tile == TILE_ITEM) {
+					itemCount++;
+				} else if (tile == TILE_START && startX == NONE) {
+					startX = x;
+					startY = y;
+				} else if (tile == TILE_FINISH) {
+					finishX = x;
+					finishY = y;
+				}
+			}
+		}
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(width);
+		data.writeInt(height);
+		data.writeInt(startX);
+		data.writeInt(startY);
+		data.writeInt(finishX);
+		data.writeInt(finishY);
+		data.writeInt(itemCount);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (tiles[y * width + x] == TILE_ITEM) {
+					data.writeInt(x);
+					data.writeInt(y);
+				}
+			}
+		}
+		data.write(tiles, 0, width * height);
+		data.flush();
+	}
+}
@@ -0,0 +1,232 @@
+package core.model;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A loose uniform grid for the things in a level that move (the dude, later
+ * hazards and debris). Each entity lives in the one cell containing the
+ * center of its box, queries look at the cells around the query box grown
+ * by the largest entity, so moving only relinks an entity when it changes
+ * cells.
+ *
+ * The cells are hashed into a fixed number of buckets, so the memory doesn't
+ * depend on the size of the level. Everything is stored in primitive arrays
+ * (entities are plain int ids) and the buckets are intrusive linked lists,
+ * so neither updates nor queries allocate.
+ */
+public class SpatialIndex {
+
+	private static final int NONE = -1;
+	/** Has to be a power of two **/
+	private static final int BUCKETS = 1 << 10;
+
+	private final float cellSize;
+	private final int[] heads = new int[BUCKETS];
+
+	/** Per entity **/
+	private float[] minX, minY, maxX, maxY;
+	private int[] cellX, cellY;
+	private int[] next, prev;
+	private boolean[] used;
+	private int capacity;
+	/** Ids of removed entities, reused by add() **/
+	private final IntArray free = new IntArray();
+	private int count;
+	/** Ids below this have been handed out **/
+	private int top;
+
+	/** Largest half width and height of all entities so far **/
+	private float maxHalfWidth, maxHalfHeight;
+
+	public SpatialIndex(float cellSize) {
+		this(cellSize, 16);
+	}
+
+	public SpatialIndex(float cellSize, int capacity) {
+		this.cellSize = cellSize;
+		for (int i = 0; i < BUCKETS; i++) {
+			heads[i] = NONE;
+		}
+		grow(Math.max(1, capacity));
+	}
+
+	/** The number of entities in the index **/
+	public int size() {
+		return count;
+	}
+
+	/** Adds an entity with the given box and returns its id **/
+	public int add(float x, float y, float width, float height) {
+		int id;
+		if (free.size > 0) {
+			id = free.pop();
+		} else {
+			if (capacity == top) {
+				grow(capacity * 2);
+			}
+			id = top++;
+		}
+		count++;
+		used[id] = true;
+		setBounds(id, x, y, width, height);
+		cellX[id] = cell(x + width / 2);
+		cellY[id] = cell(y + height / 2);
+		link(id);
+		return id;
+	}
+
+	public void remove(int id) {
+		if (!used[id]) {
+			return;
+		}
+		unlink(id);
+		used[id] = false;
+		free.add(id);
+		count--;
+	}
+
+	/** Moves an entity, only touching the lists if it changed cells **/
+	public void update(int id, float x, float y, float width, float height) {
+		setBounds(id, x, y, width, height);
+		int cx = cell(x + width / 2);
+		int cy = cell(y + height / 2);
+		if (cx != cellX[id] || cy != cellY[id]) {
+			unlink(id);
+			cellX[id] = cx;
+			cellY[id] = cy;
+			link(id);
+		}
+	}
+
+	public float getX(int id) {
+		return minX[id];
+	}
+
+	public float getY(int id) {
+		return minY[id];
+	}
+
+	public float getWidth(int id) {
+		return maxX[id] - minX[id];
+	}
+
+	public float getHeight(int id) {
+		return maxY[id] - minY[id];
+	}
+
+	/**
+	 * Adds the ids of the entities overlapping the given box to out. Returns
+	 * how many were added.
+	 */
+	public int query(float x, float y, float width, float height, IntArray out) {
+		return query(x, y, x + width, y + height, NONE, out);
+	}
+
+	/**
+	 * Adds the ids of the entities within distance (box to box, on each axis)
+	 * of the given one to out, without the entity itself. Returns how many
+	 * were added.
+	 */
+	public int queryNeighbours(int id, float distance, IntArray out) {
+		return query(minX[id] - distance, minY[id] - distance, maxX[id]
+				+ distance, maxY[id] + distance, id, out);
+	}
+
+	private int query(float x1, float y1, float x2, float y2, int skip,
+			IntArray out) {
+		// an entity can reach out of its cell by half its size
+		int cx1 = cell(x1 - maxHalfWidth);
+		int cy1 = cell(y1 - maxHalfHeight);
+		int cx2 = cell(x2 + maxHalfWidth);
+		int cy2 = cell(y2 + maxHalfHeight);
+		int found = 0;
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				for (int id = heads[bucket(cx, cy)]; id != NONE; id = next[id]) {
+					// other cells can share the bucket
+					if (cellX[id] != cx || cellY[id] != cy || id == skip) {
+						continue;
+					}
+					if (minX[id] < x2 && maxX[id] > x1 && minY[id] < y2
+							&& maxY[id] > y1) {
+						out.add(id);
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private void setBounds(int id, float x, float y, float width, float height) {
+		minX[id] = x;
+		minY[id] = y;
+		maxX[id] = x + width;
+		maxY[id] = y + height;
+		maxHalfWidth = Math.max(maxHalfWidth, width / 2);
+		maxHalfHeight = Math.max(maxHalfHeight, height / 2);
+	}
+
+	private void link(int id) {
+		int bucket = bucket(cellX[id], cellY[id]);
+		int head = heads[bucket];
+		next[id] = head;
+		prev[id] = NONE;
+		if (head != NONE) {
+			prev[head] = id;
+		}
+		heads[bucket] = id;
+	}
+
+	private void unlink(int id) {
+		if (prev[id] != NONE) {
+			next[prev[id]] = next[id];
+		} else {
+			heads[bucket(cellX[id], cellY[id])] = next[id];
+		}
+		if (next[id] != NONE) {
+			prev[next[id]] = prev[id];
+		}
+	}
+
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static int bucket(int cx, int cy) {
+		return (cx * 73856093 ^ cy * 19349663) & (BUCKETS - 1);
+	}
+
+	private void grow(int newCapacity) {
+		minX = copy(minX, newCapacity);
+		minY = copy(minY, newCapacity);
+		maxX = copy(maxX, newCapacity);
+		maxY = copy(maxY, newCapacity);
+		cellX = copy(cellX, newCapacity);
+		cellY = copy(cellY, newCapacity);
+		next = copy(next, newCapacity);
+		prev = copy(prev, newCapacity);
+		boolean[] newUsed = new boolean[newCapacity];
+		if (used != null) {
+			System.arraycopy(used, 0, newUsed, 0, capacity);
+		}
+		used = newUsed;
+		capacity = newCapacity;
+	}
+
+	private float[] copy(float[] array, int length) {
+		float[] copy = new float[length];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, capacity);
+		}
+		return copy;
+	}
+
+	private int[] copy(int[] array, int length) {
+		int[] copy = new int[length];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, capacity);
+		}
+		return copy;
+	}
+}
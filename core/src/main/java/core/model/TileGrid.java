@@ -0,0 +1,334 @@
+package core.model;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The solid tiles of a level, one bit per cell. Each row is packed into
+ * longs, so a 64 wide pit costs 8 bytes per row.
+ *
+ * The rows are grouped into chunks of {@link #CHUNK_HEIGHT} rows. A grid with
+ * a {@link Source} only keeps the chunks around the focused row in memory and
+ * loads the others on a background thread as the focus moves. A grid without
+ * a source is completely in memory.
+ */
+public class TileGrid {
+
+	/** Supplies the rows of a streamed grid **/
+	public interface Source {
+		/**
+		 * Sets the bits of the given rows, each row being wordsPerRow longs.
+		 * Gets called from the loader thread.
+		 */
+		void readRows(int firstRow, int rows, long[] bits, int wordsPerRow);
+	}
+
+	private static final int CHUNK_SHIFT = 5;
+	public static final int CHUNK_HEIGHT = 1 << CHUNK_SHIFT;
+
+	/** Every chunk that gets loaded gets a new version **/
+	private static final AtomicLong versions = new AtomicLong(1);
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final int chunkCount;
+	/** Index of the version behind the bits of a chunk **/
+	private final int versionIndex;
+	private final AtomicReferenceArray<long[]> chunks;
+	private final Source source;
+
+	/** Only touched from the render thread **/
+	private final boolean[] queued;
+	/** Edited chunks, they never get dropped (the source has the old tiles) **/
+	private final boolean[] pinned;
+	private ExecutorService loader;
+	private int focusChunk = -1;
+	private int residency = 2;
+	private int lookAhead = 2;
+	private int stalls;
+
+	/** Creates a grid which is completely in memory **/
+	public TileGrid(int width, int height) {
+		this(width, height, null);
+		for (int c = 0; c < chunkCount; c++) {
+			chunks.set(c, newChunk());
+		}
+	}
+
+	/** Creates a grid which streams its chunks from the source **/
+	public TileGrid(int width, int height, Source source) {
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.chunkCount = (height + CHUNK_HEIGHT - 1) >>> CHUNK_SHIFT;
+		this.versionIndex = wordsPerRow * CHUNK_HEIGHT;
+		this.chunks = new AtomicReferenceArray<long[]>(chunkCount);
+		this.source = source;
+		this.queued = new boolean[chunkCount];
+		this.pinned = new boolean[chunkCount];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/**
+	 * The bits of a chunk, row by row with wordsPerRow longs each (loading it
+	 * if necessary).
+	 */
+	public long[] getChunkBits(int chunk) {
+		return chunk(chunk);
+	}
+
+	/**
+	 * Changes whenever the chunk gets loaded again, so derived data can tell
+	 * whether it is still up to date.
+	 */
+	public long getChunkVersion(int chunk) {
+		return chunk(chunk)[versionIndex];
+	}
+
+	/**
+	 * Sets how many chunks above and below the focused one stay in memory and
+	 * how many additional chunks below get loaded ahead (the dude falls
+	 * down).
+	 */
+	public void setResidency(int residency, int lookAhead) {
+		this.residency = residency;
+		this.lookAhead = lookAhead;
+		focusChunk = -1;
+	}
+
+	/**
+	 * How often a chunk had to be loaded synchronously because it was not in
+	 * memory when needed.
+	 */
+	public int getStalls() {
+		return stalls;
+	}
+
+	public boolean isResident(int chunk) {
+		return chunks.get(chunk) != null;
+	}
+
+	/** Cells outside of the grid are never solid **/
+	public boolean isSolid(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) {
+			return false;
+		}
+		long[] bits = chunk(y >>> CHUNK_SHIFT);
+		return (bits[(y & (CHUNK_HEIGHT - 1)) * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	public void setSolid(int x, int y, boolean solid) {
+		long[] bits = chunk(y >>> CHUNK_SHIFT);
+		int index = (y & (CHUNK_HEIGHT - 1)) * wordsPerRow + (x >>> 6);
+		if (solid) {
+			bits[index] |= 1L << x;
+		} else {
+			bits[index] &= ~(1L << x);
+		}
+	}
+
+	/**
+	 * The bits of cells word * 64 to word * 64 + 63 in row y, bit n being
+	 * column word * 64 + n.
+	 */
+	public long getWord(int y, int word) {
+		long[] bits = chunk(y >>> CHUNK_SHIFT);
+		return bits[(y & (CHUNK_HEIGHT - 1)) * wordsPerRow + word];
+	}
+
+	/**
+	 * The first solid cell from x1 to x2 (inclusive) in row y, or -1 if there
+	 * is none. Looks at whole words, so a row of a 64 wide pit is a single
+	 * read. Cells outside of the grid are never solid.
+	 */
+	public int findSolid(int y, int x1, int x2) {
+		if (y < 0 || y >= height) {
+			return -1;
+		}
+		x1 = Math.max(x1, 0);
+		x2 = Math.min(x2, width - 1);
+		if (x1 > x2) {
+			return -1;
+		}
+		long[] bits = chunk(y >>> CHUNK_SHIFT);
+		int row = (y & (CHUNK_HEIGHT - 1)) * wordsPerRow;
+		for (int word = x1 >>> 6; word <= x2 >>> 6; word++) {
+			long mask = -1L;
+			if (word == x1 >>> 6) {
+				mask &= -1L << x1;
+			}
+			if (word == x2 >>> 6) {
+				mask &= -1L >>> (63 - (x2 & 63));
+			}
+			long solid = bits[row + word] & mask;
+			if (solid != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(solid);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Changes a cell after loading. The chunk gets a new version, so
+	 * everything derived from it (merged rectangles, render caches) gets
+	 * rebuilt for this chunk only, and it stays in memory from now on.
+	 * Returns false if nothing changed. Render thread only.
+	 */
+	public boolean edit(int x, int y, boolean solid) {
+		if (x < 0 || y < 0 || x >= width || y >= height
+				|| isSolid(x, y) == solid) {
+			return false;
+		}
+		int chunk = y >>> CHUNK_SHIFT;
+		pinned[chunk] = true;
+		setSolid(x, y, solid);
+		long[] bits = chunk(chunk);
+		bits[versionIndex] = versions.getAndIncrement() << 32;
+		return true;
+	}
+
+	/** Whether the chunk was edited (and is kept in memory for good) **/
+	public boolean isPinned(int chunk) {
+		return pinned[chunk];
+	}
+
+	public boolean isRowEmpty(int y) {
+		long[] bits = chunk(y >>> CHUNK_SHIFT);
+		int offset = (y & (CHUNK_HEIGHT - 1)) * wordsPerRow;
+		for (int i = 0; i < wordsPerRow; i++) {
+			if (bits[offset + i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the residency window to the given row. Missing chunks in the
+	 * window are queued on the loader thread, chunks outside of it are
+	 * dropped. Never blocks.
+	 */
+	public void focus(int row) {
+		if (source == null) {
+			return;
+		}
+		int center = clampChunk(row >> CHUNK_SHIFT);
+		if (center == focusChunk) {
+			return;
+		}
+		focusChunk = center;
+
+		int first = Math.max(0, center - residency - lookAhead);
+		int last = Math.min(chunkCount - 1, center + residency);
+		for (int c = 0; c < chunkCount; c++) {
+			if ((c < first || c > last) && !pinned[c]) {
+				chunks.set(c, null);
+				queued[c] = false;
+			}
+		}
+		// queue the chunks the dude falls into first
+		for (int c = center; c >= first; c--) {
+			queue(c);
+		}
+		for (int c = center + 1; c <= last; c++) {
+			queue(c);
+		}
+	}
+
+	/** Synchronously loads the residency window around the given row **/
+	public void loadAround(int row) {
+		if (source == null) {
+			return;
+		}
+		int center = clampChunk(row >> CHUNK_SHIFT);
+		int first = Math.max(0, center - residency - lookAhead);
+		int last = Math.min(chunkCount - 1, center + residency);
+		for (int c = first; c <= last; c++) {
+			if (chunks.get(c) == null) {
+				chunks.compareAndSet(c, null, readChunk(c));
+			}
+		}
+		focus(row);
+	}
+
+	public void dispose() {
+		if (loader != null) {
+			loader.shutdownNow();
+			loader = null;
+		}
+	}
+
+	private void queue(final int chunk) {
+		if (queued[chunk] || chunks.get(chunk) != null) {
+			return;
+		}
+		queued[chunk] = true;
+		if (loader == null) {
+			loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TileGrid loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				chunks.compareAndSet(chunk, null, readChunk(chunk));
+			}
+		});
+	}
+
+	private long[] chunk(int chunk) {
+		long[] bits = chunks.get(chunk);
+		if (bits == null) {
+			// The window did not cover this chunk (or the loader is behind),
+			// so there is no way around loading it right now
+			stalls++;
+			bits = readChunk(chunk);
+			if (!chunks.compareAndSet(chunk, null, bits)) {
+				bits = chunks.get(chunk);
+			}
+		}
+		return bits;
+	}
+
+	private long[] readChunk(int chunk) {
+		long[] bits = newChunk();
+		int firstRow = chunk << CHUNK_SHIFT;
+		source.readRows(firstRow, Math.min(CHUNK_HEIGHT, height - firstRow),
+				bits, wordsPerRow);
+		return bits;
+	}
+
+	private long[] newChunk() {
+		long[] bits = new long[versionIndex + 1];
+		bits[versionIndex] = versions.getAndIncrement() << 32;
+		return bits;
+	}
+
+	private int clampChunk(int chunk) {
+		return Math.max(0, Math.min(chunkCount - 1, chunk));
+	}
+}
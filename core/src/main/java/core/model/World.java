@@ -1,11 +1,9 @@
 package core.model;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 
 public class World {
 	
@@ -16,10 +14,22 @@ public class World {
 	/** The worlds level */
 	private Level level;
 	
-	/** The collision boxes(just for debug) */
-	private Array<Rectangle> collisionRects = new Array<Rectangle>();
+	/** The cells the dude collided with, x, y pairs (just for debug) */
+	private IntArray collisionCells = new IntArray();
 	
 	private Item collisionItem;
+	/** Per item of the level, whether the dude touched it yet **/
+	private boolean[] found;
+	/** The indices of the found items, in the order they were found **/
+	private IntArray foundOrder = new IntArray();
+
+	/** Cell size of the entity index in blocks **/
+	private static final float ENTITY_CELL_SIZE = 4f;
+	/** Everything that moves, including the dude **/
+	private SpatialIndex entities = new SpatialIndex(ENTITY_CELL_SIZE);
+	private int dudeEntity;
+	/** The dude (slot 0) and everyone else walking through the pit **/
+	private Actors actors = new Actors(entities);
 
 	public Dude getDude() {
 		return dude;
@@ -34,101 +44,185 @@ public class World {
 		return collisionItem;
 	}
 
+	/** Sets the item the dude touches (or null), which counts as found **/
 	public void setCollisionItem(Item collisionItem) {
 		this.collisionItem = collisionItem;
+		if (collisionItem != null) {
+			ItemIndex items = level.getItems();
+			int index = items.indexOf((int) collisionItem.x,
+					(int) collisionItem.y);
+			if (index >= 0) {
+				if (found == null || found.length != items.size()) {
+					found = new boolean[items.size()];
+				}
+				if (!found[index]) {
+					found[index] = true;
+					foundOrder.add(index);
+				}
+			}
+		}
+	}
+
+	/** How many different items the dude has found **/
+	public int getFoundCount() {
+		return foundOrder.size;
 	}
 
-	public Array<Rectangle> getCollisionRects()
+	/** Whether the item with the given index (in the ItemIndex) was found **/
+	public boolean isFound(int index) {
+		return found != null && index < found.length && found[index];
+	}
+
+	/** The index of the n-th item found **/
+	public int getFoundItem(int n) {
+		return foundOrder.get(n);
+	}
+
+	/**
+	 * Forgets the items found after the first count ones, e.g. when going
+	 * back in time.
+	 */
+	public void setFoundCount(int count) {
+		for (int i = foundOrder.size - 1; i >= count; i--) {
+			found[foundOrder.get(i)] = false;
+		}
+		foundOrder.size = Math.min(count, foundOrder.size);
+	}
+
+	public IntArray getCollisionCells()
 	{
-		return collisionRects; 
+		return collisionCells; 
 	}
 	
-	public List<Block> getDrawableBlocks(int width, int height)
+	/**
+	 * Adds x, y of every solid cell inside the view (in world units) to out.
+	 * Empty rows are skipped and solid cells are found word by word, so a
+	 * mostly empty view costs next to nothing. Returns the number of cells.
+	 */
+	public int getVisibleBlocks(Rectangle view, IntArray out)
 	{
-		int x = (int) dude.x - width;
-		int y = (int) dude.y - height;
-		if (x < 0)
-		{
-			x = 0;
-		}
-		if (y < 0)
+		int x1 = Math.max(0, firstCell(view.x));
+		int y1 = Math.max(0, firstCell(view.y));
+		int x2 = Math.min(level.getWidth() - 1, lastCell(view.x + view.width));
+		int y2 = Math.min(level.getHeight() - 1, lastCell(view.y + view.height));
+		if (x1 > x2)
 		{
-			y = 0;
+			return 0;
 		}
-		int x2 = x + 2 * width;
-		int y2 = y + 2 * width;
-		if (x2 >= level.getWidth())
+		TileGrid tiles = level.getTiles();
+		int firstWord = x1 >>> 6;
+		int lastWord = x2 >>> 6;
+		long firstMask = -1L << x1;
+		long lastMask = -1L >>> (63 - (x2 & 63));
+		int found = 0;
+		for (int row = y1; row <= y2; row++)
 		{
-			x2 = level.getWidth() - 1;
-		}
-		if (y2 >= level.getHeight())
-		{
-			y2 = level.getHeight() - 1;
-		}
-		
-		List<Block> blocks = new ArrayList<Block>();
-		Block b;
-		for (int col = x; col <= x2; col++)
-		{
-			for (int row = y; row <= y2; row++)
+			if (tiles.isRowEmpty(row))
 			{
-				b = level.getBlock(col, row);
-				if (b != null)
+				continue;
+			}
+			for (int word = firstWord; word <= lastWord; word++)
+			{
+				long bits = tiles.getWord(row, word);
+				if (word == firstWord)
+				{
+					bits &= firstMask;
+				}
+				if (word == lastWord)
 				{
-					blocks.add(b);
+					bits &= lastMask;
+				}
+				while (bits != 0)
+				{
+					out.add((word << 6) + Long.numberOfTrailingZeros(bits));
+					out.add(row);
+					bits &= bits - 1;
+					found++;
 				}
 			}
 		}
-		return blocks;
+		return found;
 	}
-	
 
-	public List<Item> getDrawableItems(int width, int height)
+	/**
+	 * Adds the merged block rectangles overlapping the view (in world units)
+	 * to out, as x, y, width, height. Returns the number of rectangles.
+	 */
+	public int getVisibleRuns(Rectangle view, IntArray out)
 	{
-		int x = (int) dude.x - width;
-		int y = (int) dude.y - height;
-		if (x < 0)
-		{
-			x = 0;
-		}
-		if (y < 0)
-		{
-			y = 0;
-		}
-		int x2 = x + 2 * width;
-		int y2 = y + 2 * width;
-		if (x2 >= level.getWidth())
-		{
-			x2 = level.getWidth() - 1;
-		}
-		if (y2 >= level.getHeight())
-		{
-			y2 = level.getHeight() - 1;
-		}
-		
-		List<Item> items = new ArrayList<Item>();
-		Item i;
-		for (int col = x; col <= x2; col++)
-		{
-			for (int row = y; row <= y2; row++)
-			{
-				i = level.getItem(col, row);
-				if (i != null)
-				{
-					items.add(i);
-				}
-			}
-		}
-		return items;
+		return level.getRuns().query(firstCell(view.x), firstCell(view.y),
+				lastCell(view.x + view.width), lastCell(view.y + view.height),
+				out);
+	}
+
+	/**
+	 * Adds the items inside the view (in world units) to out. Returns the
+	 * number of items.
+	 */
+	public int getVisibleItems(Rectangle view, Array<Item> out)
+	{
+		return level.getItems().query(firstCell(view.x), firstCell(view.y),
+				lastCell(view.x + view.width), lastCell(view.y + view.height),
+				out);
+	}
+
+	/** The first cell touched by a view starting at the given coordinate **/
+	private static int firstCell(float start)
+	{
+		return (int) Math.floor(start);
+	}
+
+	/** The last cell touched by a view ending at the given coordinate **/
+	private static int lastCell(float end)
+	{
+		return (int) Math.ceil(end) - 1;
+	}
+
+	public SpatialIndex getEntities() {
+		return entities;
+	}
+
+	/** The id of the dude in the entity index **/
+	public int getDudeEntity() {
+		return dudeEntity;
+	}
+
+	public Actors getActors() {
+		return actors;
+	}
+
+	/** Adds an actor (see {@link Actors#add}) and returns its slot **/
+	public int addActor(float x, float y, byte flags) {
+		return actors.add(x, y, flags);
+	}
+
+	/**
+	 * Copies the dude into actor slot 0, which also moves it in the entity
+	 * index.
+	 */
+	public void updateDudeEntity() {
+		actors.setDude(dude);
+	}
+
+	/** Moves all actors but the dude **/
+	public void update(float delta) {
+		actors.update(delta, level);
+	}
+
+	/**
+	 * Adds the ids of the entities inside the view (in world units) to out.
+	 * Returns the number of entities.
+	 */
+	public int getVisibleEntities(Rectangle view, IntArray out)
+	{
+		return entities.query(view.x, view.y, view.width, view.height, out);
 	}
 
 	public World(Level level) {
 		this.level = level;
 		dude = new Dude(level.getStartPosition());
-	}
-
-	public void dispose() {
-		level.dispose();
+		actors.add(dude.x, dude.y, (byte) 0);
+		dudeEntity = actors.getEntity(0);
 	}
 
 }
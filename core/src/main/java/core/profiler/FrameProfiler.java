@@ -0,0 +1,158 @@
+package core.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Measures where the time of a frame goes. Phases get timed with
+ * System.nanoTime() (begin/end may be called several times per frame, the
+ * times add up) and counters get summed up per frame. Each frame ends up in
+ * a ring of the last {@link #HISTORY} frames, which gives p50, p99 and max.
+ * Recording a frame doesn't allocate.
+ */
+public class FrameProfiler {
+
+	/** Phases **/
+	public static final int SIMULATION = 0;
+	public static final int AUDIO = 1;
+	public static final int RENDER = 2;
+	/** Everything the screen does in a frame **/
+	public static final int FRAME = 3;
+	public static final int PHASES = 4;
+
+	/** Counters **/
+	public static final int STEPS = 0;
+	/** Times a SpriteBatch sent its sprites to the GPU **/
+	public static final int BATCH_FLUSHES = 1;
+	/** Batch flushes plus the draws of the block layer **/
+	public static final int DRAW_CALLS = 2;
+	public static final int BLOCKS = 3;
+	public static final int ITEMS = 4;
+	public static final int ENTITIES = 5;
+	public static final int COUNTERS = 6;
+
+	private static final String[] PHASE_NAMES = { "simulation", "audio",
+			"render", "frame" };
+	private static final String[] COUNTER_NAMES = { "steps", "batch flushes",
+			"draw calls", "blocks", "items", "entities" };
+
+	/** Frames kept, 10 seconds at 60 fps **/
+	public static final int HISTORY = 600;
+
+	private final long[][] times = new long[PHASES][HISTORY];
+	private final int[][] counts = new int[COUNTERS][HISTORY];
+	private final long[] started = new long[PHASES];
+	private final long[] current = new long[PHASES];
+	private final int[] currentCounts = new int[COUNTERS];
+	/** Frames recorded so far **/
+	private long frames;
+	private final long[] sorted = new long[HISTORY];
+
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+
+	public static String getCounterName(int counter) {
+		return COUNTER_NAMES[counter];
+	}
+
+	public void begin(int phase) {
+		started[phase] = System.nanoTime();
+	}
+
+	public void end(int phase) {
+		current[phase] += System.nanoTime() - started[phase];
+	}
+
+	public void count(int counter, int amount) {
+		currentCounts[counter] += amount;
+	}
+
+	/** Stores the current frame in the history and starts the next one **/
+	public void endFrame() {
+		int slot = (int) (frames % HISTORY);
+		for (int p = 0; p < PHASES; p++) {
+			times[p][slot] = current[p];
+			current[p] = 0;
+		}
+		for (int c = 0; c < COUNTERS; c++) {
+			counts[c][slot] = currentCounts[c];
+			currentCounts[c] = 0;
+		}
+		frames++;
+	}
+
+	/** The number of frames in the history **/
+	public int size() {
+		return (int) Math.min(frames, HISTORY);
+	}
+
+	/**
+	 * The time of the phase (in nanoseconds) which the given fraction (0 to
+	 * 1) of the frames in the history stayed below.
+	 */
+	public long getPercentile(int phase, float fraction) {
+		int size = size();
+		if (size == 0) {
+			return 0;
+		}
+		System.arraycopy(times[phase], 0, sorted, 0, size);
+		Arrays.sort(sorted, 0, size);
+		return sorted[Math.min(size - 1, (int) (fraction * size))];
+	}
+
+	public long getMax(int phase) {
+		long max = 0;
+		for (int i = 0; i < size(); i++) {
+			max = Math.max(max, times[phase][i]);
+		}
+		return max;
+	}
+
+	/** The counter of the last frame **/
+	public int getLast(int counter) {
+		return frames == 0 ? 0 : counts[counter][(int) ((frames - 1) % HISTORY)];
+	}
+
+	public float getAverage(int counter) {
+		int size = size();
+		if (size == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += counts[counter][i];
+		}
+		return sum / (float) size;
+	}
+
+	/**
+	 * Writes the frames in the history, oldest first, one line per frame with
+	 * the phase times in nanoseconds and the counters.
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		out.write("frame");
+		for (int p = 0; p < PHASES; p++) {
+			out.write("," + PHASE_NAMES[p] + "_ns");
+		}
+		for (int c = 0; c < COUNTERS; c++) {
+			out.write("," + COUNTER_NAMES[c].replace(' ', '_'));
+		}
+		out.write('\n');
+		for (long frame = frames - size(); frame < frames; frame++) {
+			int slot = (int) (frame % HISTORY);
+			StringBuilder line = new StringBuilder();
+			line.append(frame);
+			for (int p = 0; p < PHASES; p++) {
+				line.append(',').append(times[p][slot]);
+			}
+			for (int c = 0; c < COUNTERS; c++) {
+				line.append(',').append(counts[c][slot]);
+			}
+			line.append('\n');
+			out.write(line.toString());
+		}
+		out.flush();
+	}
+}
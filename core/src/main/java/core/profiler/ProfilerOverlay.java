@@ -0,0 +1,69 @@
+package core.profiler;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Matrix4;
+
+/**
+ * Shows the numbers of a {@link FrameProfiler} in the top left corner. The
+ * text only gets rebuilt a few times per second, so the overlay itself
+ * hardly shows up in the numbers.
+ */
+public class ProfilerOverlay {
+
+	private static final int REFRESH_FRAMES = 30;
+
+	private final BitmapFont font = new BitmapFont();
+	private final SpriteBatch batch = new SpriteBatch();
+	private final Matrix4 projection = new Matrix4();
+	private final StringBuilder text = new StringBuilder();
+	private int frames;
+
+	public void draw(FrameProfiler profiler, int width, int height) {
+		if (frames++ % REFRESH_FRAMES == 0) {
+			update(profiler);
+		}
+		batch.setProjectionMatrix(projection.setToOrtho2D(0, 0, width, height));
+		batch.begin();
+		font.drawMultiLine(batch, text, 8, height - 8);
+		batch.end();
+	}
+
+	public void dispose() {
+		font.dispose();
+		batch.dispose();
+	}
+
+	private void update(FrameProfiler profiler) {
+		text.setLength(0);
+		text.append(Gdx.graphics.getFramesPerSecond()).append(" fps, ")
+				.append(profiler.size()).append(" frames\n");
+		text.append("phase  p50 / p99 / max (ms)\n");
+		for (int p = 0; p < FrameProfiler.PHASES; p++) {
+			text.append(FrameProfiler.getPhaseName(p)).append("  ");
+			millis(profiler.getPercentile(p, 0.5f));
+			text.append(" / ");
+			millis(profiler.getPercentile(p, 0.99f));
+			text.append(" / ");
+			millis(profiler.getMax(p));
+			text.append('\n');
+		}
+		for (int c = 0; c < FrameProfiler.COUNTERS; c++) {
+			text.append(FrameProfiler.getCounterName(c)).append("  ")
+					.append(profiler.getLast(c)).append(" (avg ")
+					.append(Math.round(profiler.getAverage(c) * 10) / 10f)
+					.append(")\n");
+		}
+	}
+
+	/** Appends nanoseconds as milliseconds with two decimals **/
+	private void millis(long nanos) {
+		long hundredths = nanos / 10000;
+		text.append(hundredths / 100).append('.');
+		if (hundredths % 100 < 10) {
+			text.append('0');
+		}
+		text.append(hundredths % 100);
+	}
+}
@@ -3,35 +3,43 @@ package core.screens;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.InputProcessor;
-import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.utils.Logger;
 
+import core.assets.Assets;
+import core.assets.LevelTask;
 import core.controller.DudeController;
 import core.controller.AudioController;
-import core.model.Level;
+import core.controller.FixedTimestep;
+import core.controller.InputFrame;
+import core.controller.InputQueue;
 import core.model.World;
 import core.view.WorldRenderer;
 
-public class FinishScreen implements Screen, InputProcessor {
+public class FinishScreen implements LoadableScreen, InputProcessor {
 
 	private static final Logger logger = new Logger("ThePit", Logger.DEBUG);
-	private static final float CLAMP_DELTA = 0.2f;
 
 	private World world;
 	private WorldRenderer renderer;
 	private DudeController dudeController;
 	private AudioController musicController;
+	private FixedTimestep timestep = new FixedTimestep();
+
+	private Assets assets;
+	private LevelTask level;
 
 	private boolean fadingIn;
 	private float alpha;
 
 	@Override
 	public void dispose() {
+		if (world != null) {
+			dudeController.dispose();
+			renderer.dispose();
+		}
 		musicController.dispose();
-		dudeController.dispose();
-		renderer.dispose();
-		world.dispose();
+		level.release();
 	}
 
 	@Override
@@ -51,17 +59,25 @@ public class FinishScreen implements Screen, InputProcessor {
 
 	}
 
+	@Override
+	public void queueAssets(Assets assets) {
+		this.assets = assets;
+		level = new LevelTask("finish.png", "items_finish.txt", assets);
+		assets.getLoader().add(level);
+		musicController = new AudioController(assets);
+	}
+
 	@Override
 	public void show() {
 		fadingIn = true;
 		alpha = 1.0f;
 
-		world = new World(new Level("finish.png", "items_finish.txt"));
-		renderer = new WorldRenderer(world, false);
+		world = new World(level.get());
+		renderer = new WorldRenderer(world, assets, false);
 		renderer.setPpu(20);
 		renderer.loadBlock("block_finish");
 		dudeController = new DudeController(world);
-		musicController = new AudioController(world);
+		musicController.setWorld(world);
 		Gdx.input.setInputProcessor(this);
 		
 
@@ -74,27 +90,27 @@ public class FinishScreen implements Screen, InputProcessor {
 		Gdx.gl.glClearColor(0.95f, 0.95f, 0.95f, 1);
 		Gdx.gl.glClear(GL10.GL_COLOR_BUFFER_BIT);
 
-		// Clamp the delta time to prevent the dude falling through blocks when
-		// fps drops very low
-		delta = Math.min(CLAMP_DELTA, delta);
-
-		if (!fadingIn)
-		{
-			dudeController.update(delta);
-		}
-		musicController.update(delta);
-		renderer.render();
-		if (fadingIn)
-		{
-			if (alpha <= 0.0f)
+		int steps = timestep.advance(delta);
+		for (int i = 0; i < steps; i++) {
+			if (!fadingIn)
+			{
+				dudeController.update(FixedTimestep.STEP);
+				world.update(FixedTimestep.STEP);
+			}
+			else if (alpha <= 0.0f)
 			{
 				fadingIn = false;
 			}
 			else
 			{
-				renderer.renderFade(alpha);
 				alpha -= 0.01f;
 			}
+			musicController.update(FixedTimestep.STEP);
+		}
+		renderer.render(timestep.getAlpha());
+		if (fadingIn)
+		{
+			renderer.renderFade(Math.max(alpha, 0.0f));
 		}
 	}
 
@@ -116,6 +132,14 @@ public class FinishScreen implements Screen, InputProcessor {
 		if (keycode == Keys.SPACE || keycode == Keys.UP) {
 			dudeController.jumpPressed();
 		}
+
+		// Debug keys, held down
+		if (keycode == Keys.NUM_4) {
+			dudeController.press(InputFrame.DEBUG_FLY);
+		}
+		if (keycode == Keys.NUM_5) {
+			dudeController.press(InputFrame.DEBUG_REVERSE_GRAVITY);
+		}
 		return true;
 	}
 
@@ -134,9 +158,18 @@ public class FinishScreen implements Screen, InputProcessor {
 			renderer.setDebug(!renderer.isDebug());
 		} else if (keycode == Keys.NUM_2) {
 			logger.debug(dudeController.getDude().toString());
+			InputQueue events = dudeController.getEvents();
+			logger.debug("Input latency avg " + events.getAverageLatency()
+					/ 1000 + " us, max " + events.getMaxLatency() / 1000
+					+ " us, dropped " + events.getDropped());
+		} else if (keycode == Keys.NUM_4) {
+			dudeController.release(InputFrame.DEBUG_FLY);
+		} else if (keycode == Keys.NUM_5) {
+			dudeController.release(InputFrame.DEBUG_REVERSE_GRAVITY);
 		} else if (keycode == Keys.NUM_3) {
 			world.getDude().x = world.getLevel().getStartPosition().x;
 			world.getDude().y = world.getLevel().getStartPosition().y;
+			world.getDude().savePosition();
 		} else if (keycode == Keys.Q) {
 			Gdx.app.exit();
 		}
@@ -1,29 +1,72 @@
 package core.screens;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.InputProcessor;
-import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Logger;
+import com.badlogic.gdx.utils.StreamUtils;
 
 import core.ThePit;
+import core.assets.AssetLoader;
+import core.assets.Assets;
+import core.assets.LevelTask;
 import core.controller.AudioController;
 import core.controller.DudeController;
-import core.model.Level;
+import core.controller.FixedTimestep;
+import core.controller.InputFrame;
+import core.controller.InputQueue;
+import core.controller.InputRecording;
+import core.controller.Rewind;
+import core.model.Actors;
 import core.model.World;
+import core.profiler.FrameProfiler;
+import core.profiler.ProfilerOverlay;
 import core.view.WorldRenderer;
 
-public class GameScreen implements Screen, InputProcessor {
+public class GameScreen implements LoadableScreen, InputProcessor {
 
 	private static final Logger logger = new Logger("ThePit", Logger.DEBUG);
-	private static final float CLAMP_DELTA = 0.2f;
+	/** Where the last recording gets saved (local storage) **/
+	private static final String RECORDING = "replays/last.rec";
+	/** How long a frame may simulate when fast forwarding, in nanoseconds **/
+	private static final long FAST_FORWARD_BUDGET = 12000000L;
+	/** Where the profiler exports its frames (local storage) **/
+	private static final String PROFILE = "profile.csv";
 
 	private World world;
 	private WorldRenderer renderer;
 	private DudeController dudeController;
 	private AudioController musicController;
+	private FixedTimestep timestep = new FixedTimestep();
+	/** The run being recorded, or null **/
+	private InputRecording recording;
+	private InputRecording lastRecording;
+	/** The recording being played back, or null **/
+	private InputRecording.Player replay;
+	private InputFrame replayFrame = new InputFrame();
+	private boolean fastForward;
+	/** The last minute of the dude, played backwards while rewinding **/
+	private Rewind rewind = new Rewind();
+	private boolean rewinding;
+	private FrameProfiler profiler = new FrameProfiler();
+	/** Created the first time it is shown **/
+	private ProfilerOverlay overlay;
+	private boolean showProfiler;
+
+	private static final String BACKGROUND = "background.png";
+
+	private Assets assets;
+	private LevelTask level;
+	private AssetLoader.Task<Texture> background;
 
 	private ThePit game;
 	private boolean fadingOut;
@@ -35,10 +78,16 @@ public class GameScreen implements Screen, InputProcessor {
 
 	@Override
 	public void dispose() {
+		if (world != null) {
+			dudeController.dispose();
+			renderer.dispose();
+		}
 		musicController.dispose();
-		dudeController.dispose();
-		renderer.dispose();
-		world.dispose();
+		if (overlay != null) {
+			overlay.dispose();
+		}
+		level.release();
+		assets.release(BACKGROUND);
 	}
 
 	@Override
@@ -58,17 +107,29 @@ public class GameScreen implements Screen, InputProcessor {
 
 	}
 
+	@Override
+	public void queueAssets(Assets assets) {
+		this.assets = assets;
+		level = new LevelTask("game.png", "items.txt", assets);
+		assets.getLoader().add(level);
+		background = assets.texture(BACKGROUND);
+		musicController = new AudioController(assets);
+	}
+
 	@Override
 	public void show() {
-		world = new World(new Level("game.png", "items.txt"));
+		world = new World(level.get());
 		
-		renderer = new WorldRenderer(world, false);
-		renderer.loadBackground("background.png");
+		renderer = new WorldRenderer(world, assets, false);
+		renderer.setBackground(background.get());
 		
 		dudeController = new DudeController(world);
-		musicController = new AudioController(world);
+		musicController.setWorld(world);
 		
 		Gdx.input.setInputProcessor(this);
+
+		// warm up the finish screen while the player is falling
+		game.preloadFinishScreen();
 	}
 
 	private void checkFinish() {
@@ -78,8 +139,8 @@ public class GameScreen implements Screen, InputProcessor {
 		}
 		Vector2 finishPos = world.getLevel().getFinishPosition();
 		if (finishPos != null) {
-			Vector2 dudePos = new Vector2((int) world.getDude().getX(), (int) world.getDude().getY());
-			if (finishPos.equals(dudePos))
+			if ((int) world.getDude().getX() == (int) finishPos.x
+					&& (int) world.getDude().getY() == (int) finishPos.y)
 			{
 				fadingOut = true;
 				alpha = 0.0f;
@@ -87,34 +148,171 @@ public class GameScreen implements Screen, InputProcessor {
 		}
 	}
 
+	/** Simulates one step, taking the controls from the replay if there is one **/
+	private void step() {
+		checkFinish();
+		profiler.begin(FrameProfiler.SIMULATION);
+		if (rewinding && !fadingOut && replay == null && recording == null)
+		{
+			// the world stands still while the dude goes back
+			rewind.rewind(world, dudeController);
+		}
+		else if (!fadingOut)
+		{
+			rewind.capture(world, dudeController);
+			if (replay != null && !replay.next(replayFrame)) {
+				logger.info("Replay finished after " + replay.getStep() + " steps");
+				replay = null;
+			}
+			if (replay != null) {
+				dudeController.update(replayFrame, FixedTimestep.STEP);
+			} else {
+				dudeController.update(FixedTimestep.STEP);
+			}
+			if (recording != null) {
+				recording.record(dudeController.getInput());
+			}
+			world.update(FixedTimestep.STEP);
+		}
+		else if (alpha < 1.0f)
+		{
+			alpha += 0.01f;
+		}
+		profiler.end(FrameProfiler.SIMULATION);
+		profiler.count(FrameProfiler.STEPS, 1);
+
+		profiler.begin(FrameProfiler.AUDIO);
+		musicController.update(FixedTimestep.STEP);
+		profiler.end(FrameProfiler.AUDIO);
+	}
+
+	/**
+	 * Starts the level over with a fresh world, so a recording made from here
+	 * replays the same. Blocks dug in the meantime stay dug.
+	 */
+	private void restart() {
+		world = new World(world.getLevel());
+		dudeController = new DudeController(world);
+		renderer.setWorld(world);
+		musicController.setWorld(world);
+		timestep.reset();
+		rewind.clear();
+		fadingOut = false;
+	}
+
+	private void startRecording() {
+		replay = null;
+		restart();
+		recording = new InputRecording();
+		logger.info("Recording");
+	}
+
+	private void stopRecording() {
+		lastRecording = recording;
+		recording = null;
+		logger.info("Recorded " + lastRecording.getSteps() + " steps in "
+				+ lastRecording.getSize() + " bytes");
+		OutputStream out = Gdx.files.local(RECORDING).write(false);
+		try {
+			lastRecording.write(out);
+		} catch (IOException e) {
+			logger.error("Cannot save recording", e);
+		} finally {
+			StreamUtils.closeQuietly(out);
+		}
+	}
+
+	/** Plays the last recording (or the saved one) from the start **/
+	private void startReplay(boolean fast) {
+		if (recording != null) {
+			stopRecording();
+		}
+		if (lastRecording == null) {
+			FileHandle file = Gdx.files.local(RECORDING);
+			if (!file.exists()) {
+				logger.error("Nothing recorded yet");
+				return;
+			}
+			InputStream in = file.read();
+			try {
+				lastRecording = InputRecording.read(in);
+			} catch (IOException e) {
+				logger.error("Cannot read recording", e);
+				return;
+			} finally {
+				StreamUtils.closeQuietly(in);
+			}
+		}
+		restart();
+		replay = lastRecording.play();
+		fastForward = fast;
+	}
+
+	/** Writes the frames the profiler still has to a CSV file **/
+	private void exportProfile() {
+		FileHandle file = Gdx.files.local(PROFILE);
+		Writer out = file.writer(false);
+		try {
+			profiler.writeCsv(out);
+			logger.info("Wrote " + profiler.size() + " frames to "
+					+ file.file().getAbsolutePath());
+		} catch (IOException e) {
+			logger.error("Cannot write profile", e);
+		} finally {
+			StreamUtils.closeQuietly(out);
+		}
+	}
+
 	@Override
 	public void render(float delta) {
-		// Clamp the delta time to prevent the dude falling through blocks when
-		// fps drops very low
-		delta = Math.min(CLAMP_DELTA, delta);
-
+		profiler.begin(FrameProfiler.FRAME);
 		Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
 		Gdx.gl.glClear(GL10.GL_COLOR_BUFFER_BIT);  
-		
-		checkFinish();
 
-		if (!fadingOut)
-		{
-			dudeController.update(delta);
+		// the simulation runs in fixed steps, so it behaves the same at any
+		// frame rate
+		int steps = timestep.advance(delta);
+		if (replay != null && fastForward) {
+			// as many steps as fit into the frame, only the last one is drawn
+			long end = System.nanoTime() + FAST_FORWARD_BUDGET;
+			do {
+				step();
+			} while (replay != null && System.nanoTime() < end);
+		} else {
+			for (int i = 0; i < steps; i++) {
+				step();
+			}
 		}
-		musicController.update(delta);
-		renderer.render();
-		if (fadingOut)
+		// the finish screen disposes this one, so it only takes over once
+		// the frame is done
+		boolean finished = fadingOut && alpha >= 1.0f
+				&& game.isFinishScreenLoaded();
+		profiler.begin(FrameProfiler.RENDER);
+		renderer.render(timestep.getAlpha());
+		if (fadingOut && !finished)
 		{
-			if (alpha >= 1.0f)
-			{
-				game.loadFinishScreen();
-			}
-			else
-			{
-				renderer.renderFade(alpha);
-				alpha += 0.01f;
+			// stay white until the finish screen is ready
+			renderer.renderFade(Math.min(alpha, 1.0f));
+		}
+		profiler.end(FrameProfiler.RENDER);
+		profiler.count(FrameProfiler.BATCH_FLUSHES, renderer.getBatchFlushes());
+		profiler.count(FrameProfiler.DRAW_CALLS, renderer.getDrawCalls());
+		profiler.count(FrameProfiler.BLOCKS, renderer.getBlocksDrawn());
+		profiler.count(FrameProfiler.ITEMS, renderer.getItemsDrawn());
+		profiler.count(FrameProfiler.ENTITIES, renderer.getEntitiesDrawn());
+		profiler.end(FrameProfiler.FRAME);
+		profiler.endFrame();
+
+		if (showProfiler) {
+			if (overlay == null) {
+				overlay = new ProfilerOverlay();
 			}
+			overlay.draw(profiler, Gdx.graphics.getWidth(),
+					Gdx.graphics.getHeight());
+		}
+
+		if (finished) {
+			game.loadFinishScreen();
 		}
 	}
 
@@ -136,6 +334,18 @@ public class GameScreen implements Screen, InputProcessor {
 		if (keycode == Keys.SPACE || keycode == Keys.UP) {
 			dudeController.jumpPressed();
 		}
+
+		if (keycode == Keys.BACKSPACE) {
+			rewinding = true;
+		}
+
+		// Debug keys, held down
+		if (keycode == Keys.NUM_4) {
+			dudeController.press(InputFrame.DEBUG_FLY);
+		}
+		if (keycode == Keys.NUM_5) {
+			dudeController.press(InputFrame.DEBUG_REVERSE_GRAVITY);
+		}
 		return true;
 	}
 
@@ -147,6 +357,8 @@ public class GameScreen implements Screen, InputProcessor {
 			dudeController.rightReleased();
 		} else if (keycode == Keys.SPACE || keycode == Keys.UP) {
 			dudeController.jumpReleased();
+		} else if (keycode == Keys.BACKSPACE) {
+			rewinding = false;
 		}
 
 		// Debug keys
@@ -154,13 +366,49 @@ public class GameScreen implements Screen, InputProcessor {
 			renderer.setDebug(!renderer.isDebug());
 		} else if (keycode == Keys.NUM_2) {
 			logger.debug(dudeController.getDude().toString());
+			InputQueue events = dudeController.getEvents();
+			logger.debug("Input latency avg " + events.getAverageLatency()
+					/ 1000 + " us, max " + events.getMaxLatency() / 1000
+					+ " us, dropped " + events.getDropped());
+		} else if (keycode == Keys.NUM_4) {
+			dudeController.release(InputFrame.DEBUG_FLY);
+		} else if (keycode == Keys.NUM_5) {
+			dudeController.release(InputFrame.DEBUG_REVERSE_GRAVITY);
 		} else if (keycode == Keys.NUM_3) {
 			world.getDude().x = world.getLevel().getStartPosition().x;
 			world.getDude().y = world.getLevel().getStartPosition().y;
+			world.getDude().savePosition();
 		} else if (keycode == Keys.NUM_6) {
 			renderer.setPpu(renderer.getPpu() - 1.0f);
 		} else if (keycode == Keys.NUM_7) {
 			renderer.setPpu(renderer.getPpu() + 1.0f);
+		} else if (keycode == Keys.NUM_8) {
+			// a bot walking through the pit next to the dude
+			world.addActor(world.getDude().x, world.getDude().y, Actors.BOT);
+		} else if (keycode == Keys.NUM_9) {
+			// dig through the floor below the dude
+			int x = (int) world.getDude().x;
+			int y = (int) world.getDude().y - 1;
+			for (int dx = -1; dx <= 1; dx++) {
+				world.getLevel().clearTile(x + dx, y);
+			}
+		} else if (keycode == Keys.NUM_0) {
+			renderer.setShaderBlocks(!renderer.isShaderBlocks());
+		} else if (keycode == Keys.R) {
+			// record a run from the start, again to stop
+			if (recording == null) {
+				startRecording();
+			} else {
+				stopRecording();
+			}
+		} else if (keycode == Keys.P) {
+			startReplay(false);
+		} else if (keycode == Keys.F) {
+			startReplay(true);
+		} else if (keycode == Keys.T) {
+			showProfiler = !showProfiler;
+		} else if (keycode == Keys.C) {
+			exportProfile();
 		} else if (keycode == Keys.Q) {
 			Gdx.app.exit();
 		}
@@ -0,0 +1,16 @@
+package core.screens;
+
+import com.badlogic.gdx.Screen;
+
+import core.assets.AssetLoader;
+import core.assets.Assets;
+
+/** A screen whose assets get loaded by an {@link AssetLoader} before show() **/
+public interface LoadableScreen extends Screen {
+
+	/**
+	 * Acquires/queues everything show() needs, gets called once before
+	 * show(). The screen releases it again in dispose().
+	 */
+	void queueAssets(Assets assets);
+}
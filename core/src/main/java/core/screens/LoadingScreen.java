@@ -0,0 +1,88 @@
+package core.screens;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
+
+import core.ThePit;
+import core.assets.AssetLoader;
+
+/**
+ * Shows a progress bar while the assets of the next screen are loading, then
+ * switches to it.
+ */
+public class LoadingScreen implements Screen {
+
+	/** Milliseconds per frame spent on finishing assets **/
+	private static final int UPDATE_BUDGET = 20;
+
+	private ThePit game;
+	private AssetLoader loader;
+	private Screen next;
+	private ShapeRenderer shapeRenderer;
+	private int width;
+	private int height;
+
+	public LoadingScreen(ThePit game, AssetLoader loader) {
+		this.game = game;
+		this.loader = loader;
+	}
+
+	public void setNext(Screen next) {
+		this.next = next;
+	}
+
+	@Override
+	public void render(float delta) {
+		Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1);
+		Gdx.gl.glClear(GL10.GL_COLOR_BUFFER_BIT);
+
+		if (loader.update(UPDATE_BUDGET)) {
+			game.setScreen(next);
+			return;
+		}
+
+		float barWidth = width * 0.6f;
+		float barHeight = height * 0.02f;
+		float x = (width - barWidth) / 2;
+		float y = (height - barHeight) / 2;
+		shapeRenderer.begin(ShapeType.Filled);
+		shapeRenderer.setColor(0.3f, 0.3f, 0.3f, 1);
+		shapeRenderer.rect(x, y, barWidth, barHeight);
+		shapeRenderer.setColor(0.9f, 0.9f, 0.9f, 1);
+		shapeRenderer.rect(x, y, barWidth * loader.getProgress(), barHeight);
+		shapeRenderer.end();
+	}
+
+	@Override
+	public void resize(int width, int height) {
+		this.width = width;
+		this.height = height;
+		shapeRenderer.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+	}
+
+	@Override
+	public void show() {
+		shapeRenderer = new ShapeRenderer();
+	}
+
+	@Override
+	public void hide() {
+		shapeRenderer.dispose();
+		shapeRenderer = null;
+	}
+
+	@Override
+	public void pause() {
+	}
+
+	@Override
+	public void resume() {
+	}
+
+	@Override
+	public void dispose() {
+	}
+}
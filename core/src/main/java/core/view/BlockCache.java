@@ -0,0 +1,235 @@
+package core.view;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Logger;
+
+import core.model.BlockRuns;
+import core.model.Level;
+import core.model.TileGrid;
+
+/**
+ * The blocks of a level as static geometry. The blocks never move, so each
+ * chunk of the tile grid gets uploaded into a {@link SpriteCache} the first
+ * time it becomes visible and is then drawn with a single call per frame
+ * instead of being sent through the SpriteBatch again and again.
+ *
+ * Each run of blocks is a single tiled quad (see {@link BlockTiling}). The
+ * geometry is in world units (one unit per block), so changing the pixels
+ * per unit doesn't invalidate it. A chunk that changed gets redefined in
+ * place if it has no more runs than before (e.g. when digging) or if it is
+ * the last cache, otherwise it gets appended. A SpriteCache can't free
+ * single caches, so the whole cache is cleared once it runs full.
+ */
+public class BlockCache implements BlockLayer {
+	private static final Logger logger = new Logger(
+			BlockCache.class.getCanonicalName(), Logger.DEBUG);
+	/** The most a SpriteCache with indices can hold **/
+	private static final int CAPACITY = 8191;
+
+	private final Level level;
+	private final SpriteCache cache;
+	private final ShaderProgram shader;
+	private final float color = Color.WHITE.toFloatBits();
+	private final Matrix4 transform = new Matrix4();
+	private final IntArray runs = new IntArray();
+	private TextureRegion blockTexture;
+
+	/**
+	 * Per chunk: the cache id (-1 if it has no blocks) and the chunk version
+	 * it was built from (0 if not built).
+	 */
+	private final int[] ids;
+	private final long[] versions;
+	/** How many quads the cache of each chunk has room for **/
+	private final int[] sizes;
+	/** How many blocks the cache of each chunk holds **/
+	private final int[] counts;
+	private int used;
+	/** The cache created last, the only one SpriteCache lets grow **/
+	private int lastId = -1;
+	private int drawCalls;
+	private int blocksDrawn;
+
+	/** The shader (see BlockTiling) stays owned by the caller **/
+	public BlockCache(Level level, TextureRegion blockTexture,
+			ShaderProgram shader) {
+		this.level = level;
+		this.blockTexture = blockTexture;
+		this.shader = shader;
+		this.cache = new SpriteCache(CAPACITY, shader, true);
+		int chunks = level.getTiles().getChunkCount();
+		ids = new int[chunks];
+		versions = new long[chunks];
+		sizes = new int[chunks];
+		counts = new int[chunks];
+		Arrays.fill(ids, -1);
+	}
+
+	/** Rebuilds everything with the new texture **/
+	@Override
+	public void setBlockTexture(TextureRegion blockTexture) {
+		this.blockTexture = blockTexture;
+		clear();
+	}
+
+	/**
+	 * Draws the cached chunks intersecting the view, caching the ones that
+	 * are missing or out of date first. Fails if a chunk has too many blocks
+	 * to be cached.
+	 */
+	@Override
+	public boolean draw(Matrix4 projection, float ppu, Rectangle view) {
+		drawCalls = 0;
+		blocksDrawn = 0;
+		int chunkCount = ids.length;
+		int first = Math.max(0, (int) Math.floor(view.y) / TileGrid.CHUNK_HEIGHT);
+		int last = Math.min(chunkCount - 1, ((int) Math.ceil(view.y + view.height) - 1)
+				/ TileGrid.CHUNK_HEIGHT);
+		if (first > last) {
+			return true;
+		}
+
+		TileGrid tiles = level.getTiles();
+		for (int c = first; c <= last; c++) {
+			if (versions[c] != tiles.getChunkVersion(c)) {
+				if (!build(c, first, last)) {
+					return false;
+				}
+			}
+		}
+
+		cache.setProjectionMatrix(projection);
+		cache.setTransformMatrix(transform.setToScaling(ppu, ppu, 1));
+		cache.begin();
+		BlockTiling.setRegion(shader, blockTexture);
+		for (int c = first; c <= last; c++) {
+			if (ids[c] >= 0) {
+				cache.draw(ids[c]);
+				drawCalls++;
+				blocksDrawn += counts[c];
+			}
+		}
+		cache.end();
+		return true;
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	@Override
+	public int getBlocksDrawn() {
+		return blocksDrawn;
+	}
+
+	@Override
+	public void dispose() {
+		cache.dispose();
+	}
+
+	/**
+	 * Caches a chunk. If the cache is full it gets cleared and the other
+	 * visible chunks (first to last) get cached again as well.
+	 */
+	private boolean build(int chunk, int first, int last) {
+		int quads = collect(chunk);
+		if (quads > CAPACITY) {
+			logger.error("Too many runs in chunk " + chunk + " to cache them");
+			return false;
+		}
+		int id = ids[chunk];
+		if (id >= 0 && id == lastId) {
+			// SpriteCache redefines the last cache by creating it again with
+			// room for exactly the new quads, so it may grow or shrink
+			if (used - sizes[chunk] + quads <= CAPACITY) {
+				fill(chunk, id);
+				used += quads - sizes[chunk];
+				sizes[chunk] = quads;
+				return true;
+			}
+		} else if (id >= 0 && quads <= sizes[chunk]) {
+			// fits into the space the chunk already has
+			fill(chunk, id);
+			return true;
+		}
+		if (used + quads > CAPACITY) {
+			clear();
+			for (int c = first; c <= last; c++) {
+				if (c != chunk && !add(c, collect(c))) {
+					return false;
+				}
+			}
+			quads = collect(chunk);
+		}
+		return add(chunk, quads);
+	}
+
+	/** Collects the runs of a chunk, returns how many quads they take **/
+	private int collect(int chunk) {
+		BlockRuns blockRuns = level.getRuns();
+		int y1 = chunk * TileGrid.CHUNK_HEIGHT;
+		runs.clear();
+		blockRuns.query(0, y1, level.getWidth() - 1, y1 + TileGrid.CHUNK_HEIGHT
+				- 1, runs);
+		return runs.size / 4;
+	}
+
+	/**
+	 * Adds the collected runs as the cache of the chunk, returns false if
+	 * they don't fit.
+	 */
+	private boolean add(int chunk, int quads) {
+		if (used + quads > CAPACITY) {
+			return false;
+		}
+		if (quads == 0) {
+			versions[chunk] = level.getTiles().getChunkVersion(chunk);
+			ids[chunk] = -1;
+			return true;
+		}
+		fill(chunk, -1);
+		lastId = ids[chunk];
+		sizes[chunk] = quads;
+		used += quads;
+		return true;
+	}
+
+	/**
+	 * Puts the collected runs into the cache with the given id, or into a new
+	 * one if the id is -1.
+	 */
+	private void fill(int chunk, int id) {
+		if (id < 0) {
+			cache.beginCache();
+		} else {
+			cache.beginCache(id);
+		}
+		int count = 0;
+		for (int i = 0; i < runs.size; i += 4) {
+			int width = runs.get(i + 2), height = runs.get(i + 3);
+			BlockTiling.add(cache, blockTexture, runs.get(i), runs.get(i + 1),
+					width, height, color);
+			count += width * height;
+		}
+		ids[chunk] = cache.endCache();
+		counts[chunk] = count;
+		versions[chunk] = level.getTiles().getChunkVersion(chunk);
+	}
+
+	private void clear() {
+		cache.clear();
+		Arrays.fill(ids, -1);
+		Arrays.fill(versions, 0);
+		used = 0;
+		lastId = -1;
+	}
+}
@@ -0,0 +1,30 @@
+package core.view;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * Draws the blocks of a level. The blocks are static, so implementations
+ * keep them on the GPU instead of sending them through the SpriteBatch.
+ */
+public interface BlockLayer {
+
+	/** Draws the blocks with this texture from now on **/
+	void setBlockTexture(TextureRegion blockTexture);
+
+	/**
+	 * Draws the blocks inside the view (in world units). Must not be called
+	 * between begin() and end() of a SpriteBatch. Returns false if the layer
+	 * can't draw this view, the caller has to draw the blocks otherwise.
+	 */
+	boolean draw(Matrix4 projection, float ppu, Rectangle view);
+
+	/** The number of GL draw calls the last draw() took **/
+	int getDrawCalls();
+
+	/** The number of blocks the last draw() drew **/
+	int getBlocksDrawn();
+
+	void dispose();
+}
@@ -0,0 +1,102 @@
+package core.view;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Draws a whole run of blocks as a single quad. The texture coordinates of
+ * the quad count cells (0 to the width and height of the run) and the
+ * fragment shader wraps them into the block region of the atlas, so the
+ * block texture repeats across the run although the atlas can't use
+ * GL_REPEAT.
+ *
+ * The same shader works for a SpriteBatch and a SpriteCache. Needs OpenGL
+ * ES 2.0.
+ */
+class BlockTiling {
+
+	private static final String VERTEX_SHADER = "attribute vec4 "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+			+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+			+ "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+			+ "uniform mat4 u_projTrans;\n"
+			+ "varying vec4 v_color;\n"
+			+ "varying vec2 v_cell;\n"
+			+ "void main() {\n"
+			+ "  v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+			+ "  v_cell = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+			+ "  gl_Position = u_projTrans * "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+			+ "}\n";
+
+	// runs are at most 64 cells wide, at mediump (fp16) that leaves too few
+	// bits for the fraction of a cell
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+			+ "#ifdef GL_FRAGMENT_PRECISION_HIGH\n"
+			+ "precision highp float;\n"
+			+ "#else\n"
+			+ "precision mediump float;\n"
+			+ "#endif\n"
+			+ "#endif\n"
+			+ "varying vec4 v_color;\n"
+			+ "varying vec2 v_cell;\n"
+			+ "uniform sampler2D u_texture;\n"
+			// u, v, u2 - u, v2 - v of the block region
+			+ "uniform vec4 u_region;\n"
+			// half a texel of the region, so neighbours in the atlas don't bleed in
+			+ "uniform vec2 u_inset;\n"
+			+ "void main() {\n"
+			+ "  vec2 f = clamp(fract(v_cell), u_inset, 1.0 - u_inset);\n"
+			// the atlas has v pointing down
+			+ "  gl_FragColor = v_color * texture2D(u_texture, u_region.xy\n"
+			+ "      + vec2(f.x, 1.0 - f.y) * u_region.zw);\n"
+			+ "}\n";
+
+	/** Throws a GdxRuntimeException if shaders are not available **/
+	static ShaderProgram createShader() {
+		if (!Gdx.graphics.isGL20Available()) {
+			throw new GdxRuntimeException("Tiled blocks need GLES 2.0");
+		}
+		ShaderProgram shader = new ShaderProgram(VERTEX_SHADER,
+				FRAGMENT_SHADER);
+		if (!shader.isCompiled()) {
+			String log = shader.getLog();
+			shader.dispose();
+			throw new GdxRuntimeException("Cannot compile block shader: "
+					+ log);
+		}
+		// a SpriteCache also sets these, they are known to be missing
+		shader.fetchUniformLocation("u_proj", false);
+		shader.fetchUniformLocation("u_trans", false);
+		return shader;
+	}
+
+	/**
+	 * Points the shader at the block region, the shader has to be bound
+	 * (i.e. after begin() of the batch or cache).
+	 */
+	static void setRegion(ShaderProgram shader, TextureRegion block) {
+		shader.setUniformf("u_region", block.getU(), block.getV(),
+				block.getU2() - block.getU(), block.getV2() - block.getV());
+		shader.setUniformf("u_inset", 0.5f / block.getRegionWidth(),
+				0.5f / block.getRegionHeight());
+	}
+
+	/** Adds a run of width x height blocks at x, y (in world units) **/
+	static void add(SpriteCache cache, TextureRegion block, int x, int y,
+			int width, int height, float color) {
+		cache.add(block.getTexture(), x, y, width, height, 0, 0, width,
+				height, color);
+	}
+
+	/** Draws a run of width x height blocks, x, y in cells **/
+	static void draw(SpriteBatch batch, TextureRegion block, float ppu,
+			int x, int y, int width, int height) {
+		batch.draw(block.getTexture(), x * ppu, y * ppu, width * ppu, height
+				* ppu, 0, 0, width, height);
+	}
+}
@@ -0,0 +1,276 @@
+package core.view;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import core.model.Level;
+import core.model.TileGrid;
+
+/**
+ * Draws all visible blocks as a single quad. The solid tiles get uploaded
+ * into a small alpha texture (one texel per cell) and the fragment shader
+ * looks up its cell in there and samples the block texture from the atlas,
+ * so the cost doesn't depend on how many blocks are on screen.
+ *
+ * The index texture is a ring of {@link #RING_CHUNKS} tile grid chunks
+ * which wraps vertically (GL_REPEAT), chunk c living in slot c % RING_CHUNKS.
+ * Moving down the pit only uploads the chunks that came into view. Needs
+ * OpenGL ES 2.0.
+ */
+public class ShaderBlockLayer implements BlockLayer {
+
+	/** Has to be a power of two, so the ring can repeat **/
+	private static final int RING_CHUNKS = 8;
+	private static final int RING_ROWS = RING_CHUNKS * TileGrid.CHUNK_HEIGHT;
+
+	private static final String VERTEX_SHADER = "attribute vec4 "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+			+ "attribute vec2 a_cell;\n"
+			+ "uniform mat4 u_projTrans;\n"
+			+ "varying vec2 v_cell;\n"
+			+ "void main() {\n"
+			+ "  v_cell = a_cell;\n"
+			+ "  gl_Position = u_projTrans * "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+			+ "}\n";
+
+	// v_cell stays below the ring height (256), at mediump (fp16) that
+	// only leaves an eighth of a cell, so take highp where there is one
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n"
+			+ "#ifdef GL_FRAGMENT_PRECISION_HIGH\n"
+			+ "precision highp float;\n"
+			+ "#else\n"
+			+ "precision mediump float;\n"
+			+ "#endif\n"
+			+ "#endif\n"
+			+ "varying vec2 v_cell;\n"
+			+ "uniform sampler2D u_index;\n"
+			+ "uniform sampler2D u_atlas;\n"
+			+ "uniform vec2 u_indexSize;\n"
+			// ring row of the first visible row, v_cell.y counts from there
+			+ "uniform float u_rowOffset;\n"
+			// u, v, u2 - u, v2 - v of the block region
+			+ "uniform vec4 u_region;\n"
+			// half a texel of the region, so neighbours in the atlas don't bleed in
+			+ "uniform vec2 u_inset;\n"
+			+ "void main() {\n"
+			+ "  vec2 cell = floor(v_cell);\n"
+			+ "  vec2 texel = cell + vec2(0.5, u_rowOffset + 0.5);\n"
+			+ "  if (texture2D(u_index, texel / u_indexSize).a < 0.5) {\n"
+			+ "    discard;\n"
+			+ "  }\n"
+			+ "  vec2 f = clamp(v_cell - cell, u_inset, 1.0 - u_inset);\n"
+			// the atlas has v pointing down
+			+ "  gl_FragColor = texture2D(u_atlas, u_region.xy\n"
+			+ "      + vec2(f.x, 1.0 - f.y) * u_region.zw);\n"
+			+ "}\n";
+
+	private final Level level;
+	private final ShaderProgram shader;
+	private final Mesh mesh;
+	private final float[] vertices = new float[4 * 4];
+	private final Pixmap index;
+	private final Texture indexTexture;
+	private final int indexWidth;
+	private final Matrix4 transform = new Matrix4();
+	private final Matrix4 projTrans = new Matrix4();
+	private TextureRegion blockTexture;
+
+	private int drawCalls;
+	private int blocksDrawn;
+
+	/** Which chunk (and which version of it) each ring slot holds **/
+	private final int[] slotChunks = new int[RING_CHUNKS];
+	private final long[] slotVersions = new long[RING_CHUNKS];
+
+	/** Throws a GdxRuntimeException if shaders are not available **/
+	public ShaderBlockLayer(Level level, TextureRegion blockTexture) {
+		if (!Gdx.graphics.isGL20Available()) {
+			throw new GdxRuntimeException("The shader tilemap needs GLES 2.0");
+		}
+		this.level = level;
+		this.blockTexture = blockTexture;
+
+		shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+		if (!shader.isCompiled()) {
+			String log = shader.getLog();
+			shader.dispose();
+			throw new GdxRuntimeException("Cannot compile tilemap shader: "
+					+ log);
+		}
+
+		mesh = new Mesh(false, 4, 6, new VertexAttribute(Usage.Position, 2,
+				ShaderProgram.POSITION_ATTRIBUTE), new VertexAttribute(
+				Usage.TextureCoordinates, 2, "a_cell"));
+		mesh.setIndices(new short[] { 0, 1, 2, 2, 3, 0 });
+
+		indexWidth = MathUtils.nextPowerOfTwo(Math.max(4, level.getWidth()));
+		index = new Pixmap(indexWidth, RING_ROWS, Format.Alpha);
+		indexTexture = new Texture(index);
+		indexTexture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		indexTexture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+		for (int slot = 0; slot < RING_CHUNKS; slot++) {
+			slotChunks[slot] = -1;
+		}
+	}
+
+	@Override
+	public void setBlockTexture(TextureRegion blockTexture) {
+		this.blockTexture = blockTexture;
+	}
+
+	@Override
+	public boolean draw(Matrix4 projection, float ppu, Rectangle view) {
+		drawCalls = 0;
+		blocksDrawn = 0;
+		float x1 = Math.max(0, view.x);
+		float y1 = Math.max(0, view.y);
+		float x2 = Math.min(level.getWidth(), view.x + view.width);
+		float y2 = Math.min(level.getHeight(), view.y + view.height);
+		if (x1 >= x2 || y1 >= y2) {
+			return true;
+		}
+		int first = (int) y1 / TileGrid.CHUNK_HEIGHT;
+		int last = ((int) Math.ceil(y2) - 1) / TileGrid.CHUNK_HEIGHT;
+		if (last - first >= RING_CHUNKS) {
+			// zoomed out too far for the ring
+			return false;
+		}
+
+		TileGrid tiles = level.getTiles();
+		for (int c = first; c <= last; c++) {
+			int slot = c & (RING_CHUNKS - 1);
+			long version = tiles.getChunkVersion(c);
+			if (slotChunks[slot] != c || slotVersions[slot] != version) {
+				upload(slot, c);
+				slotChunks[slot] = c;
+				slotVersions[slot] = version;
+			}
+		}
+
+		// the cells are passed relative to the first visible row, so they
+		// stay small (below the ring height) and keep their fraction; the
+		// shader adds the ring row of that row back for the index lookup
+		int origin = (int) y1;
+		vertex(0, x1, y1, origin);
+		vertex(1, x2, y1, origin);
+		vertex(2, x2, y2, origin);
+		vertex(3, x1, y2, origin);
+		mesh.setVertices(vertices);
+
+		Texture atlas = blockTexture.getTexture();
+		atlas.bind(1);
+		indexTexture.bind(0);
+		Gdx.gl.glEnable(GL10.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
+
+		shader.begin();
+		shader.setUniformMatrix("u_projTrans",
+				projTrans.set(projection).mul(transform.setToScaling(ppu, ppu, 1)));
+		shader.setUniformi("u_index", 0);
+		shader.setUniformi("u_atlas", 1);
+		shader.setUniformf("u_indexSize", indexWidth, RING_ROWS);
+		shader.setUniformf("u_rowOffset", origin & (RING_ROWS - 1));
+		shader.setUniformf("u_region", blockTexture.getU(),
+				blockTexture.getV(),
+				blockTexture.getU2() - blockTexture.getU(),
+				blockTexture.getV2() - blockTexture.getV());
+		shader.setUniformf("u_inset", 0.5f / blockTexture.getRegionWidth(),
+				0.5f / blockTexture.getRegionHeight());
+		mesh.render(shader, GL10.GL_TRIANGLES);
+		shader.end();
+
+		Gdx.gl.glDisable(GL10.GL_BLEND);
+		drawCalls = 1;
+		blocksDrawn = countBlocks(tiles, (int) x1, (int) y1,
+				(int) Math.ceil(x2) - 1, (int) Math.ceil(y2) - 1);
+		return true;
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	@Override
+	public int getBlocksDrawn() {
+		return blocksDrawn;
+	}
+
+	@Override
+	public void dispose() {
+		shader.dispose();
+		mesh.dispose();
+		indexTexture.dispose();
+		index.dispose();
+	}
+
+	private void vertex(int i, float x, float y, float origin) {
+		int offset = i * 4;
+		vertices[offset] = x;
+		vertices[offset + 1] = y;
+		vertices[offset + 2] = x;
+		vertices[offset + 3] = y - origin;
+	}
+
+	/** The solid cells in the given range (inclusive), a word at a time **/
+	private static int countBlocks(TileGrid tiles, int x1, int y1, int x2,
+			int y2) {
+		int count = 0;
+		for (int y = y1; y <= y2; y++) {
+			for (int word = x1 >>> 6; word <= x2 >>> 6; word++) {
+				long bits = tiles.getWord(y, word);
+				if (word == x1 >>> 6) {
+					bits &= -1L << x1;
+				}
+				if (word == x2 >>> 6) {
+					bits &= -1L >>> (63 - (x2 & 63));
+				}
+				count += Long.bitCount(bits);
+			}
+		}
+		return count;
+	}
+
+	/** Writes the cells of the chunk into its slot and uploads the slot **/
+	private void upload(int slot, int chunk) {
+		TileGrid tiles = level.getTiles();
+		ByteBuffer pixels = index.getPixels();
+		int width = level.getWidth();
+		int firstRow = chunk * TileGrid.CHUNK_HEIGHT;
+		int offset = slot * TileGrid.CHUNK_HEIGHT * indexWidth;
+		for (int r = 0; r < TileGrid.CHUNK_HEIGHT; r++) {
+			int y = firstRow + r;
+			int base = offset + r * indexWidth;
+			for (int x = 0; x < indexWidth; x++) {
+				boolean solid = x < width && y < tiles.getHeight()
+						&& (tiles.getWord(y, x >>> 6) & (1L << x)) != 0;
+				pixels.put(base + x, solid ? (byte) 0xff : 0);
+			}
+		}
+
+		indexTexture.bind();
+		Gdx.gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 1);
+		pixels.position(offset);
+		Gdx.gl.glTexSubImage2D(GL10.GL_TEXTURE_2D, 0, 0, slot
+				* TileGrid.CHUNK_HEIGHT, indexWidth, TileGrid.CHUNK_HEIGHT,
+				GL10.GL_ALPHA, GL10.GL_UNSIGNED_BYTE, pixels);
+		pixels.position(0);
+	}
+}
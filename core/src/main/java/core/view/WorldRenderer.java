@@ -1,7 +1,6 @@
 package core.view;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Texture;
@@ -9,13 +8,18 @@ import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Logger;
 
-import core.model.Block;
+import core.assets.Assets;
+import core.model.Actors;
 import core.model.Dude;
 import core.model.Dude.State;
 import core.model.Item;
@@ -30,9 +34,11 @@ public class WorldRenderer {
 	private static final Logger logger = new Logger(
 			WorldRenderer.class.getCanonicalName(), Logger.DEBUG);
 	private static final float RUNNING_FRAME_DURATION = 0.06f;
+	public static final String ATLAS = "images/textures/textures.pack";
 	private float ppu = 30f; // Pixel per unit
 
 	private World world;
+	private Assets assets;
 	private OrthographicCamera cam;
 
 	ShapeRenderer shapeRenderer = new ShapeRenderer();
@@ -54,6 +60,26 @@ public class WorldRenderer {
 	private Animation walkRightAnimation;
 
 	private SpriteBatch spriteBatch;
+	private BlockLayer blockLayer;
+	private BlockCache blockCache;
+	/** Tiles the block texture across each run, see BlockTiling **/
+	private ShaderProgram tiling;
+	private ShaderBlockLayer shaderBlocks;
+	/** The visible part of the level in world units **/
+	private Rectangle view = new Rectangle();
+	/** How far the current frame is between the last two steps **/
+	private float alpha = 1;
+	/** Reused every frame, so drawing doesn't create garbage **/
+	private IntArray runs = new IntArray();
+	private IntArray cells = new IntArray();
+	private Array<Item> items = new Array<Item>();
+	private IntArray entities = new IntArray();
+	private Matrix4 fadeProjection = new Matrix4();
+	/** What the last frame drew, for the profiler **/
+	private int batchFlushes;
+	private int drawCalls;
+	private int blocksDrawn;
+	private int entitiesDrawn;
 	private boolean debug = false;
 	private int width;
 	private int height;
@@ -79,6 +105,41 @@ public class WorldRenderer {
 		this.debug = debug;
 	}
 	
+	public boolean isShaderBlocks() {
+		return blockLayer == shaderBlocks;
+	}
+
+	/**
+	 * Switches between drawing the blocks from the sprite cache and the
+	 * shader tilemap (to compare them). Stays with the cache if shaders are
+	 * not available.
+	 */
+	public void setShaderBlocks(boolean shader) {
+		if (!shader) {
+			blockLayer = blockCache;
+			return;
+		}
+		if (shaderBlocks == null) {
+			try {
+				shaderBlocks = new ShaderBlockLayer(world.getLevel(),
+						blockTexture);
+			} catch (GdxRuntimeException e) {
+				logger.error("Shader tilemap not available", e);
+				return;
+			}
+		}
+		blockLayer = shaderBlocks;
+	}
+	
+	/**
+	 * Draws another world of the same level (e.g. after a restart), the
+	 * cached blocks stay valid.
+	 */
+	public void setWorld(World world)
+	{
+		this.world = world;
+	}
+
 	public float getPpu()
 	{
 		return ppu;
@@ -91,9 +152,9 @@ public class WorldRenderer {
 		levelHeight = world.getLevel().getHeight() * ppu;
 	}
 	
-	public void loadBackground(String path)
+	public void setBackground(Texture background)
 	{
-		background = new Texture(Gdx.files.internal(path));
+		this.background = background;
 	}
 	
 	public void loadBlock(String regionName)
@@ -102,11 +163,22 @@ public class WorldRenderer {
 		if (temp != null)
 		{
 			blockTexture = temp;
+			blockCache.setBlockTexture(blockTexture);
+			if (shaderBlocks != null)
+			{
+				shaderBlocks.setBlockTexture(blockTexture);
+			}
 		}
 	}
 
-	public WorldRenderer(World world, boolean debug) {
+	/**
+	 * Takes a reference on the shared atlas, which has to be loaded already.
+	 * The background stays owned by the caller.
+	 */
+	public WorldRenderer(World world, Assets assets, boolean debug) {
 		this.world = world;
+		this.assets = assets;
+		this.atlas = assets.atlas(ATLAS).get();
 		levelWidth = world.getLevel().getWidth() * ppu;
 		levelHeight = world.getLevel().getHeight() * ppu;
 		this.cam = new OrthographicCamera();
@@ -114,11 +186,12 @@ public class WorldRenderer {
 		setDebug(debug);
 		spriteBatch = new SpriteBatch();
 		loadTextures();
+		tiling = BlockTiling.createShader();
+		blockCache = new BlockCache(world.getLevel(), blockTexture, tiling);
+		blockLayer = blockCache;
 	}
 	
 	private void loadTextures() {
-		atlas = new TextureAtlas(
-				Gdx.files.internal("images/textures/textures.pack"));
 		dudeIdleRight = atlas.findRegion("dude_idle");
 		dudeIdleLeft = new TextureRegion(dudeIdleRight);
 		dudeIdleLeft.flip(true, false);
@@ -151,33 +224,75 @@ public class WorldRenderer {
 	
 
 	public void render() {
+		render(1);
+	}
+
+	/**
+	 * Draws the world, the dude and the actors in between their last two
+	 * positions: alpha is how far the frame is between the last two
+	 * simulation steps (see FixedTimestep#getAlpha).
+	 */
+	public void render(float alpha) {
+		this.alpha = alpha;
+		blocksDrawn = 0;
+		entitiesDrawn = 0;
 		updateCam();
 
 		spriteBatch.setProjectionMatrix(cam.combined);
 		spriteBatch.begin();
 
 		drawBackground();
-		drawBlocks();
+		spriteBatch.end();
+		batchFlushes = spriteBatch.renderCalls;
+
+		// the blocks are static geometry, the batch only gets the fallback
+		boolean cached = blockLayer.draw(cam.combined, ppu, view);
+		drawCalls = cached ? blockLayer.getDrawCalls() : 0;
+		blocksDrawn = cached ? blockLayer.getBlocksDrawn() : 0;
+		if (!cached) {
+			drawBlocks();
+		}
+		spriteBatch.begin();
 		drawItems();
-		drawDude();
+		drawEntities();
 		drawItemImage();
 
-		if (isDebug()) {
-			// drawFps();
-		}
-
 		spriteBatch.end();
+		batchFlushes += spriteBatch.renderCalls;
+		drawCalls += batchFlushes;
 
 		if (isDebug()) {
 			drawDebug();
 		}
 	}
 	
+	/** Times the sprite batch sent its sprites to the GPU last frame **/
+	public int getBatchFlushes() {
+		return batchFlushes;
+	}
+
+	/** The batch flushes plus the draws of the block layer **/
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+
+	public int getBlocksDrawn() {
+		return blocksDrawn;
+	}
+
+	public int getItemsDrawn() {
+		return items.size;
+	}
+
+	public int getEntitiesDrawn() {
+		return entitiesDrawn;
+	}
+
 	public void renderFade(float alpha)
 	{
         Gdx.gl.glEnable(GL10.GL_BLEND); 
         Gdx.gl.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
-		shapeRenderer.setProjectionMatrix(new Matrix4().setToOrtho2D(0, 0, width, height));
+		shapeRenderer.setProjectionMatrix(fadeProjection.setToOrtho2D(0, 0, width, height));
 		shapeRenderer.begin(ShapeType.Filled);
 		
 		shapeRenderer.setColor(1, 1, 1, alpha);
@@ -195,7 +310,7 @@ public class WorldRenderer {
 		float x = levelWidth / 2.0f;
 		float y = cam.position.y;
 		// Calculate the dudes position on the screen
-		float dudeY = (world.getDude().y * ppu) - y + (height / 2.0f);
+		float dudeY = (world.getDude().getInterpolatedY(alpha) * ppu) - y + (height / 2.0f);
 
 		// Check if the dude reaches a boundary (currently 30 % from top resp.
 		// bottom9
@@ -212,7 +327,9 @@ public class WorldRenderer {
 
 		cam.position.set(x, y, 0);
 		cam.update();
-		
+		view.set((x - width / 2.0f) / ppu, (y - height / 2.0f) / ppu, width
+				/ ppu, height / ppu);
+
 
 		// This normalizes the camera y position to a range from 0.0 to 1.0 in
 		// the level,
@@ -235,22 +352,66 @@ public class WorldRenderer {
 				bgHeight);
 	}
 
+	/** One tiled quad per run, in a pass of its own with the tiling shader **/
 	private void drawBlocks() {
-		for (Block block : world.getDrawableBlocks((int) (width / ppu),
-				(int) (height / ppu))) {
-			spriteBatch.draw(blockTexture, block.x * ppu, block.y * ppu,
-					block.width * ppu, block.height * ppu);
+		runs.clear();
+		world.getVisibleRuns(view, runs);
+		spriteBatch.setShader(tiling);
+		spriteBatch.begin();
+		BlockTiling.setRegion(tiling, blockTexture);
+		for (int i = 0; i < runs.size; i += 4) {
+			int width = runs.get(i + 2), height = runs.get(i + 3);
+			BlockTiling.draw(spriteBatch, blockTexture, ppu, runs.get(i),
+					runs.get(i + 1), width, height);
+			blocksDrawn += width * height;
 		}
+		spriteBatch.end();
+		spriteBatch.setShader(null);
+		batchFlushes += spriteBatch.renderCalls;
 	}
 
 	private void drawItems() {
-		for (Item item : world.getDrawableItems((int) (width / ppu),
-				(int) (height / ppu))) {
+		items.clear();
+		world.getVisibleItems(view, items);
+		for (int i = 0; i < items.size; i++) {
+			Item item = items.get(i);
 			spriteBatch.draw(itemTexture, item.x * ppu, item.y * ppu,
 					item.width * ppu, item.height * ppu);
 		}
 	}
 
+	private void drawEntities() {
+		entities.clear();
+		world.getVisibleEntities(view, entities);
+		Actors actors = world.getActors();
+		for (int i = 0; i < entities.size; i++) {
+			int slot = actors.getSlot(entities.get(i));
+			if (slot == 0) {
+				drawDude();
+			} else if (slot > 0) {
+				drawActor(actors, slot);
+			}
+		}
+		entitiesDrawn = entities.size;
+	}
+
+	/** The other actors look like ghosts of the dude **/
+	private void drawActor(Actors actors, int slot) {
+		boolean left = actors.isFacingLeft(slot);
+		TextureRegion frame = left ? dudeIdleLeft : dudeIdleRight;
+		if (actors.getState(slot) == State.WALKING) {
+			frame = (left ? walkLeftAnimation : walkRightAnimation)
+					.getKeyFrame(actors.getStateTime(slot), true);
+		} else if (actors.getState(slot) == State.JUMPING) {
+			frame = left ? dudeFallLeft : dudeFallRight;
+		}
+		spriteBatch.setColor(1, 1, 1, 0.5f);
+		spriteBatch.draw(frame, (actors.getInterpolatedX(slot, alpha) - 0.2f)
+				* ppu, actors.getInterpolatedY(slot, alpha) * ppu, (Actors.WIDTH + 0.45f) * ppu,
+				Actors.HEIGHT * ppu);
+		spriteBatch.setColor(1, 1, 1, 1);
+	}
+
 	private void drawDude() {
 		Dude dude = world.getDude();
 		dudeFrame = dude.isFacingLeft() ? dudeIdleLeft : dudeIdleRight;
@@ -266,8 +427,8 @@ public class WorldRenderer {
 				dudeFrame = dude.isFacingLeft() ? dudeFallLeft : dudeFallRight;
 			}
 		}
-		float x = (dude.x - 0.2f) * ppu;
-		float y = dude.y * ppu;
+		float x = (dude.getInterpolatedX(alpha) - 0.2f) * ppu;
+		float y = dude.getInterpolatedY(alpha) * ppu;
 		float width = (dude.width + 0.45f) * ppu;
 		float height = dude.height * ppu;
 		spriteBatch.draw(dudeFrame, x, y, width, height);
@@ -290,36 +451,31 @@ public class WorldRenderer {
 
 	}
 
-	// private void drawFps() {
-	// BitmapFont font = new BitmapFont();
-	// String fps = Gdx.graphics.getFramesPerSecond() + " fps";
-	// float width = font.getBounds(fps).width;
-	// font.draw(spriteBatch, fps, CAMERA_WIDTH - 1 - width, CAMERA_HEIGHT - 1);
-	// }
-
 	private void drawDebug() {
 		shapeRenderer.setProjectionMatrix(cam.combined);
 
 		shapeRenderer.begin(ShapeType.Line);
 
-//		// render blocks
-//		for (Block block : world.getDrawableBlocks((int) (width / PPU),
-//				(int) (height / PPU))) {
-//			debugRenderer.setColor(new Color(1, 1, 1, 1));
-//			debugRenderer.rect(block.x * PPU, block.y * PPU, block.width * PPU,
-//					block.height * PPU);
-//		}
-//
-//		for (Item item : world.getDrawableItems((int) (width / PPU),
-//				(int) (height / PPU))) {
-//			debugRenderer.setColor(new Color(0, 1, 0, 1));
-//			debugRenderer.rect(item.x * PPU, item.y * PPU, item.width * PPU,
-//					item.height * PPU);
-//		}
+		// render blocks
+		shapeRenderer.setColor(1, 1, 1, 1);
+		cells.clear();
+		world.getVisibleBlocks(view, cells);
+		for (int i = 0; i < cells.size; i += 2) {
+			shapeRenderer.rect(cells.get(i) * ppu, cells.get(i + 1) * ppu,
+					ppu, ppu);
+		}
+
+		// render items
+		shapeRenderer.setColor(0, 1, 0, 1);
+		for (int i = 0; i < items.size; i++) {
+			Item item = items.get(i);
+			shapeRenderer.rect(item.x * ppu, item.y * ppu, item.width * ppu,
+					item.height * ppu);
+		}
 
 		// render The Dude
 		Dude dude = world.getDude();
-		shapeRenderer.setColor(new Color(1, 0, 0, 1));
+		shapeRenderer.setColor(1, 0, 0, 1);
 		shapeRenderer.rect(dude.x * ppu, dude.y * ppu, dude.width * ppu,
 				dude.height * ppu);
 		shapeRenderer.end();
@@ -328,9 +484,10 @@ public class WorldRenderer {
 
 		// render collision blocks
 		shapeRenderer.setColor(1, 1, 1, 1);
-		for (Rectangle collRect : world.getCollisionRects()) {
-			shapeRenderer.rect(collRect.x * ppu, collRect.y * ppu,
-					collRect.width * ppu, collRect.height * ppu);
+		IntArray collisionCells = world.getCollisionCells();
+		for (int i = 0; i < collisionCells.size; i += 2) {
+			shapeRenderer.rect(collisionCells.get(i) * ppu,
+					collisionCells.get(i + 1) * ppu, ppu, ppu);
 		}
 
 		// render fps
@@ -339,7 +496,13 @@ public class WorldRenderer {
 	}
 
 	public void dispose() {
-		atlas.dispose();
-		background.dispose();
+		spriteBatch.dispose();
+		blockCache.dispose();
+		tiling.dispose();
+		if (shaderBlocks != null) {
+			shaderBlocks.dispose();
+		}
+		shapeRenderer.dispose();
+		assets.release(ATLAS);
 	}
 }
@@ -0,0 +1,106 @@
+package core.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+
+import core.model.Actors;
+import core.model.Dude;
+import core.model.Level;
+import core.model.TileGrid;
+import core.model.World;
+
+/**
+ * The simulation doesn't depend on the frame rate or on Gdx: a run played
+ * at an uneven frame rate, replayed step by step from its controls in a
+ * fresh world, has to end up in exactly the same place.
+ */
+public class DeterminismTest {
+
+	private static final int WIDTH = 32;
+	private static final int HEIGHT = 512;
+	private static final int STEPS = 60 * 60;
+
+	@Test
+	public void replaysTheSameRun() throws IOException {
+		Random random = new Random(42);
+		World world = new World(createLevel());
+		world.addActor(10, HEIGHT - 2, Actors.BOT);
+		DudeController controller = new DudeController(world);
+		InputRecording recording = new InputRecording();
+		FixedTimestep timestep = new FixedTimestep();
+		InputFrame frame = new InputFrame();
+		int buttons = InputFrame.RIGHT;
+		while (recording.getSteps() < STEPS) {
+			// frames between 5 and 40 ms, the steps stay fixed
+			int steps = timestep.advance(0.005f + random.nextFloat() * 0.035f);
+			for (int i = 0; i < steps; i++) {
+				if (random.nextInt(60) == 0) {
+					buttons = random.nextBoolean() ? InputFrame.LEFT
+							: InputFrame.RIGHT;
+				}
+				if (random.nextInt(30) == 0) {
+					buttons ^= InputFrame.JUMP;
+				}
+				frame.setButtons(buttons);
+				controller.update(frame, FixedTimestep.STEP);
+				world.update(FixedTimestep.STEP);
+				recording.record(controller.getInput());
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		recording.write(out);
+		InputRecording read = InputRecording
+				.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(recording.getSteps(), read.getSteps());
+
+		World replayed = new World(world.getLevel());
+		replayed.addActor(10, HEIGHT - 2, Actors.BOT);
+		DudeController replayController = new DudeController(replayed);
+		InputRecording.Player player = read.play();
+		while (player.next(frame)) {
+			replayController.update(frame, FixedTimestep.STEP);
+			replayed.update(FixedTimestep.STEP);
+		}
+		assertEquals(recording.getSteps(), player.getStep());
+
+		Dude dude = world.getDude();
+		Dude replayedDude = replayed.getDude();
+		// the dude has to have gone somewhere for this to mean anything
+		assertFalse(dude.y == world.getLevel().getStartPosition().y);
+		assertEquals(dude.x, replayedDude.x, 0);
+		assertEquals(dude.y, replayedDude.y, 0);
+		assertEquals(dude.getVelocity().x, replayedDude.getVelocity().x, 0);
+		assertEquals(dude.getVelocity().y, replayedDude.getVelocity().y, 0);
+		assertEquals(dude.getState(), replayedDude.getState());
+		assertEquals(world.getActors().getX(1), replayed.getActors().getX(1), 0);
+		assertEquals(world.getActors().getY(1), replayed.getActors().getY(1), 0);
+		world.getLevel().dispose();
+	}
+
+	/** Floors with a gap every few rows, so the dude falls, walks and jumps **/
+	private static Level createLevel() {
+		TileGrid tiles = new TileGrid(WIDTH, HEIGHT);
+		Random random = new Random(7);
+		for (int y = 0; y < HEIGHT - 8; y += 6) {
+			int gap = random.nextInt(WIDTH - 4);
+			for (int x = 0; x < WIDTH; x++) {
+				if (x < gap || x > gap + 2) {
+					tiles.setSolid(x, y, true);
+				}
+			}
+		}
+		return new Level(tiles, new IntArray(), new Vector2(WIDTH / 2,
+				HEIGHT - 2), null);
+	}
+}
@@ -0,0 +1,101 @@
+package core.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The recorded frames have to come back exactly, step for step, also after
+ * being written out and read back.
+ */
+public class InputRecordingTest {
+
+	@Test
+	public void playsBackWhatWasRecorded() throws IOException {
+		Random random = new Random(1);
+		int[] buttons = new int[5000];
+		InputRecording recording = new InputRecording();
+		int current = 0;
+		for (int i = 0; i < buttons.length; i++) {
+			if (random.nextInt(20) == 0) {
+				current = random.nextInt(1 << 5);
+			}
+			buttons[i] = current;
+			recording.record(current);
+		}
+		assertFrames(buttons, recording);
+		assertFrames(buttons, copy(recording));
+	}
+
+	@Test
+	public void keepsLongHoldsAndHighBits() throws IOException {
+		// holds and flips that need several bytes as varints
+		int[] buttons = new int[70000];
+		for (int i = 0; i < buttons.length; i++) {
+			buttons[i] = i < 300 ? 0 : i < 20000 ? 1 << 30 : InputFrame.JUMP;
+		}
+		InputRecording recording = new InputRecording();
+		for (int i = 0; i < buttons.length; i++) {
+			recording.record(buttons[i]);
+		}
+		// three entries of at most ten bytes each
+		assertTrue(recording.getSize() <= 30);
+		assertFrames(buttons, copy(recording));
+	}
+
+	@Test
+	public void goesOnRecordingAfterWriting() throws IOException {
+		InputRecording recording = new InputRecording();
+		recording.record(InputFrame.LEFT);
+		recording.record(InputFrame.LEFT);
+		recording.write(new ByteArrayOutputStream());
+		recording.record(InputFrame.LEFT);
+		recording.record(InputFrame.RIGHT);
+		assertFrames(new int[] { InputFrame.LEFT, InputFrame.LEFT,
+				InputFrame.LEFT, InputFrame.RIGHT }, copy(recording));
+	}
+
+	@Test
+	public void playsNothingWhenEmpty() throws IOException {
+		InputRecording.Player player = copy(new InputRecording()).play();
+		assertFalse(player.next(new InputFrame()));
+		assertTrue(player.isDone());
+	}
+
+	@Test
+	public void rejectsOtherData() {
+		try {
+			InputRecording.read(new ByteArrayInputStream(new byte[16]));
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static InputRecording copy(InputRecording recording)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		recording.write(out);
+		return InputRecording.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	private static void assertFrames(int[] buttons, InputRecording recording) {
+		assertEquals(buttons.length, recording.getSteps());
+		InputRecording.Player player = recording.play();
+		InputFrame frame = new InputFrame();
+		for (int i = 0; i < buttons.length; i++) {
+			assertTrue(player.next(frame));
+			assertEquals("step " + i, buttons[i], frame.getButtons());
+		}
+		assertFalse(player.next(frame));
+		assertTrue(player.isDone());
+	}
+}
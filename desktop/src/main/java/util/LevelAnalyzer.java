@@ -0,0 +1,498 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import core.controller.DudeController;
+import core.controller.FixedTimestep;
+import core.controller.InputFrame;
+import core.model.Dude;
+import core.model.Level;
+import core.model.LevelFormat;
+import core.model.TileGrid;
+import core.model.World;
+
+/**
+ * Lets a crowd of bots play a map to see how it plays before anyone tests
+ * it: which parts get reached, how often each item gets found, where bots
+ * get stuck and how many make it to the finish.
+ *
+ * Every bot plays its own headless World with seeded random input (half of
+ * them wander around, half walk along and turn at walls), spread over all
+ * cores with a fixed thread pool (Java 6, like MapDecoder). Prints a report
+ * and writes a heatmap of the visits next to the map.
+ *
+ * Usage: LevelAnalyzer map.png|map.pit [bots] [seconds per bot]
+ */
+public class LevelAnalyzer {
+
+	private static final int DEFAULT_BOTS = 1000;
+	private static final int DEFAULT_SECONDS = 120;
+	private static final int STEPS_PER_SECOND = Math.round(1 / FixedTimestep.STEP);
+	/** A bot which stays this close to one spot for STUCK_STEPS is stuck **/
+	private static final float STUCK_DISTANCE = 2f;
+	private static final int STUCK_STEPS = 3 * STEPS_PER_SECOND;
+	private static final int TOP_STUCK_SPOTS = 10;
+
+	private final Level level;
+	private final int width;
+	private final int height;
+	private final int steps;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: LevelAnalyzer map.png|map.pit [bots] [seconds per bot]");
+			return;
+		}
+		File map = new File(args[0]);
+		int bots = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BOTS;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_SECONDS;
+
+		Level level = load(map);
+		LevelAnalyzer analyzer = new LevelAnalyzer(level, seconds
+				* STEPS_PER_SECOND);
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		Stats stats;
+		try {
+			stats = analyzer.run(pool, threads, bots);
+		} finally {
+			pool.shutdown();
+		}
+		long time = System.nanoTime() - start;
+
+		System.out.println("Map: " + map + " (" + level.getWidth() + " x "
+				+ level.getHeight() + ")");
+		System.out.println(String.format(
+				"Bots: %d, %d s each, %d steps in %.1f s on %d cores (%.0fx real time)",
+				bots, seconds, stats.steps, time / 1e9, threads,
+				stats.steps / (double) STEPS_PER_SECOND / (time / 1e9)));
+		analyzer.report(stats);
+
+		String name = map.getName();
+		File heatmap = new File(map.getParentFile(), name.substring(0,
+				name.lastIndexOf('.'))
+				+ "_heatmap.png");
+		ImageIO.write(analyzer.heatmap(stats), "png", heatmap);
+		System.out.println("Heatmap: " + heatmap);
+	}
+
+	public LevelAnalyzer(Level level, int steps) {
+		this.level = level;
+		this.width = level.getWidth();
+		this.height = level.getHeight();
+		this.steps = steps;
+	}
+
+	/**
+	 * Plays the bots with the given number of workers on the pool and returns
+	 * the merged statistics. The level is shared by all bots, it has to be
+	 * completely in memory (see {@link #load(File)}), so playing only reads
+	 * it.
+	 */
+	public Stats run(ExecutorService pool, int workers, int bots) {
+		// the item lookup builds its hash table lazily, do it before sharing
+		level.getItems().indexOf(0, 0);
+		AtomicInteger next = new AtomicInteger();
+		Exploration[] explorations = new Exploration[workers];
+		Future<?>[] futures = new Future<?>[workers];
+		for (int i = 0; i < workers; i++) {
+			explorations[i] = new Exploration(next, bots);
+			futures[i] = pool.submit(explorations[i]);
+		}
+		Stats total = new Stats(width * height, level.getItems().size());
+		try {
+			for (int i = 0; i < workers; i++) {
+				futures[i].get();
+				total.add(explorations[i].stats);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Analysis interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Bot failed", e.getCause());
+		}
+		return total;
+	}
+
+	/**
+	 * A worker: takes the next bot until all are played, so a worker with
+	 * short lived bots just plays more of them. Keeps its own statistics,
+	 * they get merged at the end.
+	 */
+	private class Exploration implements Runnable {
+		private final AtomicInteger next;
+		private final int bots;
+		final Stats stats = new Stats(width * height, level.getItems().size());
+
+		Exploration(AtomicInteger next, int bots) {
+			this.next = next;
+			this.bots = bots;
+		}
+
+		@Override
+		public void run() {
+			for (int bot = next.getAndIncrement(); bot < bots; bot = next
+					.getAndIncrement()) {
+				play(bot, stats);
+			}
+		}
+	}
+
+	/** Plays one bot from the start until the finish or the time is up **/
+	private void play(int bot, Stats stats) {
+		World world = new World(level);
+		DudeController controller = new DudeController(world);
+		Dude dude = world.getDude();
+		Bot input = new Bot(new Random(bot), (bot & 1) == 0);
+		InputFrame frame = new InputFrame();
+		Vector2 finish = level.getFinishPosition();
+
+		float anchorX = dude.x, anchorY = dude.y;
+		int anchorStep = 0;
+		boolean stuck = false;
+		int deepest = (int) dude.y;
+		int found = 0;
+		int step = 0;
+		while (step < steps) {
+			frame.setButtons(input.next(dude));
+			controller.update(frame, FixedTimestep.STEP);
+			step++;
+
+			int cx = clamp((int) (dude.x + dude.width / 2), width);
+			int cy = clamp((int) (dude.y + dude.height / 2), height);
+			stats.visits[cy * width + cx]++;
+			deepest = Math.min(deepest, cy);
+
+			while (found < world.getFoundCount()) {
+				int item = world.getFoundItem(found++);
+				stats.itemFinds[item]++;
+				stats.itemFindSteps[item] += step;
+			}
+
+			if (Math.abs(dude.x - anchorX) > STUCK_DISTANCE
+					|| Math.abs(dude.y - anchorY) > STUCK_DISTANCE) {
+				anchorX = dude.x;
+				anchorY = dude.y;
+				anchorStep = step;
+				stuck = false;
+			} else if (!stuck && step - anchorStep >= STUCK_STEPS) {
+				stuck = true;
+				stats.stuck[cy * width + cx]++;
+			}
+
+			if (finish != null && (int) dude.x == (int) finish.x
+					&& (int) dude.y == (int) finish.y) {
+				stats.finished++;
+				stats.finishSteps += step;
+				break;
+			}
+		}
+		stats.bots++;
+		stats.steps += step;
+		stats.deepestSum += deepest;
+		stats.deepest = Math.min(stats.deepest, deepest);
+	}
+
+	/** Prints what the bots found out **/
+	public void report(Stats stats) {
+		TileGrid tiles = level.getTiles();
+		int free = 0, reached = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (!tiles.isSolid(x, y)) {
+					free++;
+					if (stats.visits[y * width + x] > 0) {
+						reached++;
+					}
+				}
+			}
+		}
+		System.out.println(String.format(
+				"Reached: %d of %d free cells (%.1f %%), deepest row %d (%.0f on average)",
+				reached, free, percent(reached, free), stats.deepest,
+				stats.deepestSum / (double) stats.bots));
+		if (level.getFinishPosition() == null) {
+			System.out.println("Finish: none in map");
+		} else {
+			System.out.println(String.format(
+					"Finish: reached by %d bots (%.1f %%)%s", stats.finished,
+					percent(stats.finished, stats.bots),
+					stats.finished == 0 ? "" : String.format(
+							", after %.1f s on average",
+							seconds(stats.finishSteps / stats.finished))));
+		}
+
+		int items = stats.itemFinds.length;
+		int foundItems = 0;
+		for (int i = 0; i < items; i++) {
+			if (stats.itemFinds[i] > 0) {
+				foundItems++;
+			}
+		}
+		System.out.println("Items: " + foundItems + " of " + items
+				+ " found at least once");
+		for (int i = 0; i < items; i++) {
+			int finds = stats.itemFinds[i];
+			System.out.println(String.format("  #%d at %d,%d: %.1f %% of bots%s",
+					i, level.getItems().getX(i), level.getItems().getY(i),
+					percent(finds, stats.bots), finds == 0 ? "" : String.format(
+							", after %.1f s on average",
+							seconds(stats.itemFindSteps[i] / finds))));
+		}
+
+		// sort the spots by count, packed as count << 32 | cell
+		IntArray cells = new IntArray();
+		for (int i = 0; i < stats.stuck.length; i++) {
+			if (stats.stuck[i] > 0) {
+				cells.add(i);
+			}
+		}
+		long[] spots = new long[cells.size];
+		for (int i = 0; i < spots.length; i++) {
+			spots[i] = ((long) stats.stuck[cells.get(i)] << 32) | cells.get(i);
+		}
+		Arrays.sort(spots);
+		System.out.println("Stuck spots (no progress for "
+				+ STUCK_STEPS / STEPS_PER_SECOND + " s): " + spots.length);
+		for (int i = spots.length - 1; i >= Math.max(0, spots.length
+				- TOP_STUCK_SPOTS); i--) {
+			int cell = (int) spots[i];
+			System.out.println(String.format("  %d,%d: %d times",
+					cell % width, cell / width, spots[i] >>> 32));
+		}
+	}
+
+	/**
+	 * Draws the visits on a log scale from blue (rare) to red (often). Blocks
+	 * are gray, items green if found and white if not, stuck spots magenta.
+	 */
+	public BufferedImage heatmap(Stats stats) {
+		int scale = height * 4 <= 16384 ? 4 : 1;
+		BufferedImage image = new BufferedImage(width * scale, height
+				* scale, BufferedImage.TYPE_INT_RGB);
+		int max = 1;
+		for (int visits : stats.visits) {
+			max = Math.max(max, visits);
+		}
+		double logMax = Math.log(1 + max);
+		TileGrid tiles = level.getTiles();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int cell = y * width + x;
+				int rgb;
+				int item = level.getItems().indexOf(x, y);
+				if (tiles.isSolid(x, y)) {
+					rgb = 0x404040;
+				} else if (item >= 0) {
+					rgb = stats.itemFinds[item] > 0 ? 0x00ff00 : 0xffffff;
+				} else if (stats.stuck[cell] > 0) {
+					rgb = 0xff00ff;
+				} else if (stats.visits[cell] == 0) {
+					rgb = 0x000000;
+				} else {
+					rgb = heat(Math.log(1 + stats.visits[cell]) / logMax);
+				}
+				// the image starts top left, the level bottom left
+				int top = (height - 1 - y) * scale;
+				for (int dy = 0; dy < scale; dy++) {
+					for (int dx = 0; dx < scale; dx++) {
+						image.setRGB(x * scale + dx, top + dy, rgb);
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Reads a png or compiled map completely into memory and gives the items
+	 * placeholder images.
+	 */
+	public static Level load(File map) throws IOException {
+		LevelFormat format;
+		if (map.getName().endsWith(LevelFormat.EXTENSION)) {
+			byte[] bytes = new byte[(int) map.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(map));
+			try {
+				in.readFully(bytes);
+			} finally {
+				in.close();
+			}
+			format = new LevelFormat(ByteBuffer.wrap(bytes));
+		} else {
+			BufferedImage image = ImageIO.read(map);
+			if (image == null) {
+				throw new IOException("Cannot read " + map);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			LevelFormat.write(out, image.getWidth(), image.getHeight(),
+					LevelCompiler.toTiles(image));
+			format = new LevelFormat(ByteBuffer.wrap(out.toByteArray()));
+		}
+
+		int width = format.getWidth();
+		int height = format.getHeight();
+		TileGrid tiles = new TileGrid(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (format.getTile(x, y) == LevelFormat.TILE_BLOCK) {
+					tiles.setSolid(x, y, true);
+				}
+			}
+		}
+		IntArray itemSlots = new IntArray();
+		Array<TextureRegion> images = new Array<TextureRegion>();
+		for (int i = 0; i < format.getItemCount(); i++) {
+			itemSlots.add(format.getItemX(i));
+			itemSlots.add(format.getItemY(i));
+			images.add(new TextureRegion());
+		}
+		Vector2 start = format.hasStart() ? new Vector2(format.getStartX(),
+				format.getStartY()) : new Vector2(0, 0);
+		Vector2 finish = format.hasFinish() ? new Vector2(
+				format.getFinishX(), format.getFinishY()) : null;
+		Level level = new Level(tiles, itemSlots, start, finish);
+		level.setItemImages(images);
+		return level;
+	}
+
+	/** What the bots of one worker (or all of them) did **/
+	public static class Stats {
+		/** Steps spent in each cell **/
+		final int[] visits;
+		/** How often bots got stuck in each cell **/
+		final int[] stuck;
+		/** Per item, how many bots found it and the sum of the steps it took **/
+		final int[] itemFinds;
+		final long[] itemFindSteps;
+		int bots;
+		long steps;
+		int finished;
+		long finishSteps;
+		long deepestSum;
+		int deepest = Integer.MAX_VALUE;
+
+		Stats(int cells, int items) {
+			visits = new int[cells];
+			stuck = new int[cells];
+			itemFinds = new int[items];
+			itemFindSteps = new long[items];
+		}
+
+		void add(Stats other) {
+			for (int i = 0; i < visits.length; i++) {
+				visits[i] += other.visits[i];
+				stuck[i] += other.stuck[i];
+			}
+			for (int i = 0; i < itemFinds.length; i++) {
+				itemFinds[i] += other.itemFinds[i];
+				itemFindSteps[i] += other.itemFindSteps[i];
+			}
+			bots += other.bots;
+			steps += other.steps;
+			finished += other.finished;
+			finishSteps += other.finishSteps;
+			deepestSum += other.deepestSum;
+			deepest = Math.min(deepest, other.deepest);
+		}
+	}
+
+	/**
+	 * Random input: wanderers pick a direction (or none) and maybe a jump
+	 * for a random while, walkers keep walking, turn or jump at walls and
+	 * jump now and then.
+	 */
+	private static class Bot {
+		private final Random random;
+		private final boolean wanderer;
+		private int buttons;
+		private int hold;
+
+		Bot(Random random, boolean wanderer) {
+			this.random = random;
+			this.wanderer = wanderer;
+			buttons = random.nextBoolean() ? InputFrame.LEFT
+					: InputFrame.RIGHT;
+		}
+
+		int next(Dude dude) {
+			if (wanderer) {
+				if (--hold <= 0) {
+					int direction = random.nextInt(5);
+					buttons = direction < 2 ? InputFrame.LEFT
+							: direction < 4 ? InputFrame.RIGHT : 0;
+					if (random.nextInt(3) == 0) {
+						buttons |= InputFrame.JUMP;
+					}
+					hold = 10 + random.nextInt(120);
+				}
+				return buttons;
+			}
+
+			buttons &= ~InputFrame.JUMP;
+			if (dude.getVelocity().x == 0 && --hold <= 0) {
+				// ran into a wall, try to jump it or turn around
+				if (random.nextBoolean()) {
+					buttons |= InputFrame.JUMP;
+				} else {
+					buttons ^= InputFrame.LEFT | InputFrame.RIGHT;
+				}
+				hold = 20;
+			} else if (random.nextInt(90) == 0) {
+				buttons |= InputFrame.JUMP;
+			}
+			return buttons;
+		}
+	}
+
+	/** Blue over yellow to red for 0 to 1 **/
+	private static int heat(double t) {
+		int r, g, b;
+		if (t < 0.5) {
+			double s = t * 2;
+			r = (int) (255 * s);
+			g = (int) (255 * s);
+			b = (int) (255 * (1 - s));
+		} else {
+			double s = (t - 0.5) * 2;
+			r = 255;
+			g = (int) (255 * (1 - s));
+			b = 0;
+		}
+		return (r << 16) | (g << 8) | b;
+	}
+
+	private static int clamp(int cell, int size) {
+		return Math.max(0, Math.min(size - 1, cell));
+	}
+
+	private static double percent(long part, long whole) {
+		return whole == 0 ? 0 : 100.0 * part / whole;
+	}
+
+	private static double seconds(long steps) {
+		return steps / (double) STEPS_PER_SECOND;
+	}
+}
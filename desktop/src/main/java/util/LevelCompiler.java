@@ -0,0 +1,84 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+import core.model.LevelFormat;
+
+/**
+ * Compiles the png maps in ./assets/maps into the binary *.pit format, which
+ * the game loads instead of the png if present. Optionally takes the maps to
+ * compile as arguments.
+ */
+public class LevelCompiler {
+
+	public static void main(String[] args) throws IOException {
+		File[] maps;
+		if (args.length > 0) {
+			maps = new File[args.length];
+			for (int i = 0; i < args.length; i++) {
+				maps[i] = new File(args[i]);
+			}
+		} else {
+			maps = new File("./assets/maps").listFiles();
+			if (maps == null) {
+				System.err.println("Cannot find ./assets/maps");
+				return;
+			}
+		}
+
+		for (File map : maps) {
+			if (map.getName().endsWith(".png")) {
+				File out = new File(map.getParentFile(),
+						LevelFormat.compiledName(map.getName()));
+				compile(map, out);
+				System.out.println(map + " -> " + out);
+			}
+		}
+	}
+
+	public static void compile(File map, File out) throws IOException {
+		BufferedImage image = ImageIO.read(map);
+		if (image == null) {
+			throw new IOException("Cannot read " + map);
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] tiles = toTiles(image);
+
+		OutputStream stream = new BufferedOutputStream(new FileOutputStream(
+				out));
+		try {
+			LevelFormat.write(stream, width, height, tiles);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Classifies every pixel, flipping the rows since the image starts top
+	 * left and the level starts bottom left.
+	 */
+	public static byte[] toTiles(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] tiles = new byte[width * height];
+		int[] argb = new int[width];
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, argb, 0, width);
+			int flipY = height - 1 - y;
+			for (int x = 0; x < width; x++) {
+				// ImageIO gives ARGB, the map colors are RGBA
+				int rgba = (argb[x] << 8) | (argb[x] >>> 24);
+				tiles[flipY * width + x] = LevelFormat.tileCode(rgba);
+			}
+		}
+		return tiles;
+	}
+}